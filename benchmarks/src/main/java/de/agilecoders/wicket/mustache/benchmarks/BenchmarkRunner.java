@@ -0,0 +1,45 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+
+/**
+ * Runs all benchmarks (or the ones that match the first argument) and reports throughput
+ * and allocation rate.
+ *
+ * @author miha
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BenchmarkRunner() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param args optional benchmark name pattern
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(final String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*")
+                .mode(Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(options).run();
+    }
+}
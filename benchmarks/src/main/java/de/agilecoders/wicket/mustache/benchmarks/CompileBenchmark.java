@@ -0,0 +1,50 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import com.github.mustachejava.Mustache;
+import de.agilecoders.wicket.mustache.WicketMustache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+
+/**
+ * Measures template compilation and execution without any wicket component.
+ *
+ * @author miha
+ */
+@State(Scope.Benchmark)
+public class CompileBenchmark {
+
+    @Param({"SMALL", "LARGE", "NESTED"})
+    public Model model;
+
+    @Param({"false", "true"})
+    public boolean escapeHtml;
+
+    private String template;
+    private Mustache mustache;
+
+    @Setup
+    public void setup() {
+        template = model.template();
+        mustache = WicketMustache.mustache(new StringReader(template), model.templateName(), escapeHtml);
+    }
+
+    @Benchmark
+    public Mustache compile() {
+        return WicketMustache.mustache(new StringReader(template), model.templateName(), escapeHtml);
+    }
+
+    @Benchmark
+    public String execute() {
+        return WicketMustache.compile(mustache, model.data());
+    }
+
+    @Benchmark
+    public String compileAndExecute() {
+        return WicketMustache.compile(new StringReader(template), model.templateName(), model.data(), escapeHtml);
+    }
+}
@@ -0,0 +1,56 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import de.agilecoders.wicket.mustache.util.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Writer;
+
+/**
+ * Measures the json serialization of template data.
+ *
+ * @author miha
+ */
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"SMALL", "LARGE", "NESTED"})
+    public Model model;
+
+    @Benchmark
+    public String stringify() {
+        return Json.stringify(model.data());
+    }
+
+    @Benchmark
+    public void write(final Blackhole blackhole) {
+        Json.write(model.data(), new BlackholeWriter(blackhole));
+    }
+
+    /**
+     * A {@link Writer} that consumes all characters.
+     */
+    private static final class BlackholeWriter extends Writer {
+        private final Blackhole blackhole;
+
+        private BlackholeWriter(final Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            blackhole.consume(buffer);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import org.apache.wicket.util.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The template models that are used by all benchmarks.
+ *
+ * @author miha
+ */
+public enum Model {
+
+    /**
+     * a few items
+     */
+    SMALL("items.mustache", items(5)),
+
+    /**
+     * a long list of items
+     */
+    LARGE("items.mustache", items(1000)),
+
+    /**
+     * a deeply nested tree of nodes
+     */
+    NESTED("nested.mustache", node("root", 5, 3));
+
+    private final String templateName;
+    private final Map<String, Object> data;
+
+    /**
+     * Construct.
+     *
+     * @param templateName The name of the template
+     * @param data         The template data
+     */
+    Model(final String templateName, final Map<String, Object> data) {
+        this.templateName = templateName;
+        this.data = data;
+    }
+
+    /**
+     * @return the name of the template, which is located next to this class
+     */
+    public String templateName() {
+        return templateName;
+    }
+
+    /**
+     * @return the template data
+     */
+    public Map<String, Object> data() {
+        return data;
+    }
+
+    /**
+     * @return the template source
+     */
+    public String template() {
+        final InputStream stream = Model.class.getResourceAsStream(templateName);
+
+        try {
+            return IOUtils.toString(stream, "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException("can't read template: " + templateName, e);
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+
+    /**
+     * creates a list of items, each item contains some characters that must be escaped.
+     *
+     * @param count the number of items
+     * @return the template data
+     */
+    private static Map<String, Object> items(final int count) {
+        final List<Object> items = new ArrayList<Object>(count);
+
+        for (int i = 0; i < count; i++) {
+            final Map<String, Object> item = new HashMap<String, Object>();
+            item.put("name", "Item " + i);
+            item.put("price", "$" + i + ".99");
+            item.put("description", "<b>Item</b> \"" + i + "\" & 'more'");
+            item.put("features", i % 3 == 0 ? Boolean.FALSE : Arrays.asList("New!", "Awesome!"));
+            items.add(item);
+        }
+
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("items", items);
+
+        return data;
+    }
+
+    /**
+     * creates a tree of nodes.
+     *
+     * @param name    the name of the node
+     * @param depth   the remaining depth
+     * @param breadth the number of children per node
+     * @return the template data
+     */
+    private static Map<String, Object> node(final String name, final int depth, final int breadth) {
+        final Map<String, Object> node = new HashMap<String, Object>();
+        node.put("name", name);
+
+        if (depth > 0) {
+            final List<Object> children = new ArrayList<Object>(breadth);
+            for (int i = 0; i < breadth; i++) {
+                children.add(node(name + "." + i, depth - 1, breadth));
+            }
+            node.put("children", children);
+        }
+
+        return node;
+    }
+}
@@ -0,0 +1,159 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import de.agilecoders.wicket.mustache.WicketMustache;
+import de.agilecoders.wicket.mustache.markup.html.ClientSideMustachePanel;
+import de.agilecoders.wicket.mustache.markup.html.MustachePanel;
+import de.agilecoders.wicket.mustache.util.Json;
+import org.apache.wicket.core.util.resource.PackageResourceStream;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures full renders of mustache panels with {@link WicketTester}. Each benchmark returns the whole page,
+ * including the header.
+ *
+ * @author miha
+ */
+@State(Scope.Thread)
+public class PanelRenderBenchmark {
+
+    @Param({"SMALL", "LARGE", "NESTED"})
+    public Model model;
+
+    @Param({"false", "true"})
+    public boolean escapeHtml;
+
+    private WicketTester tester;
+    private ClientSideMustachePanel scriptPanel;
+
+    @Setup
+    public void setup() {
+        tester = new WicketTester(new BenchmarkApplication());
+        scriptPanel = newClientSidePanel();
+    }
+
+    @TearDown
+    public void tearDown() {
+        tester.destroy();
+    }
+
+    @Benchmark
+    public String mustachePanel() {
+        tester.startComponentInPage(newPanel(false));
+        return tester.getLastResponse().getDocument();
+    }
+
+    @Benchmark
+    public String streamingMustachePanel() {
+        tester.startComponentInPage(newPanel(true));
+        return tester.getLastResponse().getDocument();
+    }
+
+    @Benchmark
+    public String clientSideMustachePanel() {
+        tester.startComponentInPage(newClientSidePanel());
+        return tester.getLastResponse().getDocument();
+    }
+
+    @Benchmark
+    public CharSequence renderScript() {
+        return WicketMustache.createRenderScript(scriptPanel, Json.stringify(model.data()));
+    }
+
+    /**
+     * @param streaming whether the panel streams its output
+     * @return new server side panel
+     */
+    private MustachePanel newPanel(final boolean streaming) {
+        final MustachePanel panel = new BenchmarkMustachePanel(model, streaming);
+        panel.setEscapeModelStrings(escapeHtml);
+
+        return panel;
+    }
+
+    /**
+     * @return new client side panel
+     */
+    private ClientSideMustachePanel newClientSidePanel() {
+        return new BenchmarkClientSideMustachePanel(model);
+    }
+
+    /**
+     * Server side panel that renders the template of a benchmark model.
+     */
+    private static final class BenchmarkMustachePanel extends MustachePanel {
+        private final Model model;
+        private final boolean streaming;
+
+        private BenchmarkMustachePanel(final Model model, final boolean streaming) {
+            super("panel", new ModelData(model));
+
+            this.model = model;
+            this.streaming = streaming;
+        }
+
+        @Override
+        protected IResourceStream newTemplateResourceStream() {
+            return new PackageResourceStream(Model.class, model.templateName());
+        }
+
+        @Override
+        protected boolean isStreaming() {
+            return streaming;
+        }
+    }
+
+    /**
+     * Client side panel that renders the template of a benchmark model.
+     */
+    private static final class BenchmarkClientSideMustachePanel extends ClientSideMustachePanel {
+        private final Model model;
+
+        private BenchmarkClientSideMustachePanel(final Model model) {
+            super("panel", new ModelData(model));
+
+            this.model = model;
+        }
+
+        @Override
+        protected IResourceStream newTemplateResourceStream() {
+            return new PackageResourceStream(Model.class, model.templateName());
+        }
+    }
+
+    /**
+     * Provides the data of a benchmark model.
+     */
+    private static final class ModelData extends AbstractReadOnlyModel<Object> {
+        private final Model model;
+
+        private ModelData(final Model model) {
+            this.model = model;
+        }
+
+        @Override
+        public Object getObject() {
+            return model.data();
+        }
+    }
+
+    /**
+     * Application that installs wicket-mustache.
+     */
+    private static final class BenchmarkApplication extends MockApplication {
+        @Override
+        protected void init() {
+            super.init();
+
+            WicketMustache.install(this);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import org.apache.wicket.util.string.Strings;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that all {@link CompileBenchmark}s render the expected output.
+ *
+ * @author miha
+ */
+public class CompileBenchmarkTest {
+
+    @Test
+    public void rendersAllItemsWithEscapedValues() {
+        final String output = newBenchmark(Model.SMALL, false).execute();
+
+        assertEquals(5, count(output, "<li>"));
+        assertTrue(output.contains("<h4>Item 4</h4>"));
+        assertTrue(output.contains("<p>&lt;b&gt;Item&lt;/b&gt; &quot;4&quot; &amp; &#039;more&#039;</p>"));
+        // features of every third item are false
+        assertEquals(2, count(output, "no features."));
+        assertEquals(3, count(output, "<span>New!</span>"));
+    }
+
+    @Test
+    public void rendersLargeModel() {
+        final String output = newBenchmark(Model.LARGE, false).execute();
+
+        assertEquals(1000, count(output, "<li>"));
+        assertTrue(output.contains("<h4>Item 999</h4>"));
+    }
+
+    @Test
+    public void rendersAllNodesOfNestedModel() {
+        final String output = newBenchmark(Model.NESTED, false).execute();
+
+        // 1 + 3 + 9 + 27 + 81 + 243 nodes
+        assertEquals(364, count(output, "<li>"));
+        assertTrue(output.contains("<li>root.2.2.2.2.2</li>"));
+    }
+
+    @Test
+    public void escapesWholeOutput() {
+        for (final Model model : Model.values()) {
+            assertEquals(Strings.escapeMarkup(newBenchmark(model, false).execute()).toString(), newBenchmark(model, true).execute());
+        }
+    }
+
+    @Test
+    public void allBenchmarksRenderSameOutput() {
+        for (final Model model : Model.values()) {
+            for (final boolean escapeHtml : new boolean[] {false, true}) {
+                final CompileBenchmark benchmark = newBenchmark(model, escapeHtml);
+
+                assertNotNull(benchmark.compile());
+                assertEquals(benchmark.execute(), benchmark.compileAndExecute());
+            }
+        }
+    }
+
+    @Test
+    public void modelsProvideTemplateData() {
+        assertEquals(5, ((List<?>) Model.SMALL.data().get("items")).size());
+        assertEquals(1000, ((List<?>) Model.LARGE.data().get("items")).size());
+        assertEquals("root.1", ((Map<?, ?>) ((List<?>) Model.NESTED.data().get("children")).get(1)).get("name"));
+    }
+
+    /**
+     * @return a benchmark that is set up like jmh does
+     */
+    static CompileBenchmark newBenchmark(final Model model, final boolean escapeHtml) {
+        final CompileBenchmark benchmark = new CompileBenchmark();
+        benchmark.model = model;
+        benchmark.escapeHtml = escapeHtml;
+        benchmark.setup();
+
+        return benchmark;
+    }
+
+    /**
+     * @return the number of occurrences of given value
+     */
+    static int count(final String output, final String value) {
+        int count = 0;
+
+        for (int i = output.indexOf(value); i >= 0; i = output.indexOf(value, i + value.length())) {
+            count++;
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,37 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import de.agilecoders.wicket.mustache.util.Json;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that both {@link JsonBenchmark}s serialize the same json.
+ *
+ * @author miha
+ */
+public class JsonBenchmarkTest {
+
+    @Test
+    public void writeProducesSameJsonAsStringify() {
+        for (final Model model : Model.values()) {
+            final JsonBenchmark benchmark = new JsonBenchmark();
+            benchmark.model = model;
+
+            final StringWriter writer = new StringWriter();
+            Json.write(model.data(), writer);
+
+            assertEquals(benchmark.stringify(), writer.toString());
+        }
+    }
+
+    @Test
+    public void stringifySerializesWholeModel() {
+        final JsonBenchmark benchmark = new JsonBenchmark();
+        benchmark.model = Model.SMALL;
+
+        assertEquals(Model.SMALL.data(), Json.fromJson(benchmark.stringify(), Object.class));
+    }
+}
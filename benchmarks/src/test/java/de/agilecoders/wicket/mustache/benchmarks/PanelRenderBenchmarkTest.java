@@ -0,0 +1,86 @@
+package de.agilecoders.wicket.mustache.benchmarks;
+
+import de.agilecoders.wicket.mustache.util.Json;
+import org.junit.Test;
+
+import static de.agilecoders.wicket.mustache.benchmarks.CompileBenchmarkTest.count;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that all {@link PanelRenderBenchmark}s render the expected output.
+ *
+ * @author miha
+ */
+public class PanelRenderBenchmarkTest {
+
+    @Test
+    public void panelsRenderTheEvaluatedTemplate() {
+        for (final Model model : Model.values()) {
+            for (final boolean escapeHtml : new boolean[] {false, true}) {
+                final PanelRenderBenchmark benchmark = newBenchmark(model, escapeHtml);
+
+                try {
+                    final String expected = CompileBenchmarkTest.newBenchmark(model, escapeHtml).execute();
+
+                    assertEquals(expected, body(benchmark.mustachePanel()));
+                    assertEquals(expected, body(benchmark.streamingMustachePanel()));
+                } finally {
+                    benchmark.tearDown();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void clientSidePanelRendersTemplateData() {
+        final PanelRenderBenchmark benchmark = newBenchmark(Model.SMALL, false);
+
+        try {
+            final String output = benchmark.clientSideMustachePanel();
+
+            assertEquals(1, count(output, "Mustache.render("));
+            assertTrue(output.contains(Json.stringify(Model.SMALL.data())));
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    @Test
+    public void renderScriptContainsTemplateData() {
+        final PanelRenderBenchmark benchmark = newBenchmark(Model.NESTED, false);
+
+        try {
+            final String script = benchmark.renderScript().toString();
+
+            assertTrue(script.contains("Mustache.render("));
+            assertTrue(script.contains(Json.stringify(Model.NESTED.data())));
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * @return a benchmark that is set up like jmh does
+     */
+    private static PanelRenderBenchmark newBenchmark(final Model model, final boolean escapeHtml) {
+        final PanelRenderBenchmark benchmark = new PanelRenderBenchmark();
+        benchmark.model = model;
+        benchmark.escapeHtml = escapeHtml;
+        benchmark.setup();
+
+        return benchmark;
+    }
+
+    /**
+     * @return the body of the rendered panel
+     */
+    private static String body(final String page) {
+        final String open = "<span wicket:id=\"panel\">";
+        final int start = page.indexOf(open) + open.length();
+
+        return page.substring(start, page.lastIndexOf("</span>"))
+                .replace("<wicket:panel>", "")
+                .replace("</wicket:panel>", "");
+    }
+}
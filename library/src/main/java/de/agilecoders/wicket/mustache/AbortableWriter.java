@@ -0,0 +1,90 @@
+package de.agilecoders.wicket.mustache;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that delegates to another writer until the render was aborted. It's used to protect the
+ * target writer against concurrently rendered values that are completed after a render timeout.
+ *
+ * @author miha
+ */
+final class AbortableWriter extends Writer {
+
+    private final Writer writer;
+    private boolean aborted = false;
+    private boolean completed = false;
+
+    /**
+     * Construct.
+     *
+     * @param writer the target writer
+     */
+    AbortableWriter(final Writer writer) {
+        super();
+
+        this.writer = writer;
+    }
+
+    /**
+     * aborts the render by interrupting the rendering thread; all following writes are discarded.
+     *
+     * @param renderThread the thread that waits for the render to complete
+     */
+    synchronized void abort(final Thread renderThread) {
+        if (!completed) {
+            aborted = true;
+            renderThread.interrupt();
+        }
+    }
+
+    /**
+     * marks the render as completed. Must be called by the rendering thread.
+     *
+     * @return true, if the render was aborted
+     */
+    synchronized boolean complete() {
+        completed = true;
+
+        if (aborted) {
+            // clear the interrupted flag of the render thread
+            Thread.interrupted();
+        }
+
+        return aborted;
+    }
+
+    /**
+     * @return true, if the render was aborted
+     */
+    synchronized boolean isAborted() {
+        return aborted;
+    }
+
+    @Override
+    public synchronized void write(final char[] buffer, final int offset, final int length) throws IOException {
+        if (!aborted) {
+            writer.write(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public synchronized void write(final String value, final int offset, final int length) throws IOException {
+        if (!aborted) {
+            writer.write(value, offset, length);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (!aborted) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the target writer is owned by the caller
+        flush();
+    }
+}
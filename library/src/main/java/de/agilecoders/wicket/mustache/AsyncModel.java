@@ -0,0 +1,151 @@
+package de.agilecoders.wicket.mustache;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.util.time.Duration;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Model of template data that is loaded concurrently. Before a page or an ajax response is rendered, wicket-mustache
+ * starts loading the models of all visible mustache panels with the executor of {@link MustacheSettings}, so that
+ * slow services are called at the same time and the render waits for the slowest one only. The object is loaded in
+ * the rendering thread if no executor is set or the model is read before it was started.
+ * <p/>
+ * {@link #load()} is executed by a worker thread, which knows the current application and session but not the
+ * request cycle. The loaded object is released when the model is detached.
+ *
+ * @param <T> type of the template data
+ * @author miha
+ */
+public abstract class AsyncModel<T> implements IModel<T> {
+    private static final long serialVersionUID = 14121982L;
+
+    private transient Future<T> future;
+    private transient T object;
+    private transient boolean loaded;
+
+    /**
+     * starts loading the object if it isn't loaded or loading already.
+     */
+    public void start() {
+        if (loaded || future != null) {
+            return;
+        }
+
+        final ExecutorService executorService = WicketMustache.settings().getExecutorService();
+        if (executorService == null) {
+            return;
+        }
+
+        final Application application = Application.exists() ? Application.get() : null;
+        final Session session = Session.exists() ? Session.get() : null;
+
+        future = executorService.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (ThreadContext.get(false) != null) {
+                    // the executor is saturated and runs the task in the rendering thread
+                    return load();
+                }
+
+                ThreadContext.setApplication(application);
+                ThreadContext.setSession(session);
+
+                try {
+                    return load();
+                } finally {
+                    ThreadContext.detach();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return true, if the object is loading or loaded
+     */
+    public boolean isStarted() {
+        return loaded || future != null;
+    }
+
+    /**
+     * @return true, if the object is loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    @Override
+    public T getObject() {
+        if (!loaded) {
+            object = future != null ? await() : load();
+            future = null;
+            loaded = true;
+        }
+
+        return object;
+    }
+
+    /**
+     * waits for the object that is loaded concurrently, but not longer than the render timeout.
+     *
+     * @return the loaded object
+     */
+    private T await() {
+        final Duration timeout = WicketMustache.settings().getRenderTimeout();
+
+        try {
+            return timeout != null ? future.get(timeout.getMilliseconds(), TimeUnit.MILLISECONDS) : future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WicketRuntimeException("interrupted while loading template data", e);
+        } catch (ExecutionException e) {
+            throw new WicketRuntimeException("can't load template data", e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            future = null;
+            throw new WicketRuntimeException("template data wasn't loaded within " + timeout, e);
+        }
+    }
+
+    @Override
+    public void setObject(final T object) {
+        cancel();
+
+        this.object = object;
+        this.loaded = true;
+    }
+
+    @Override
+    public void detach() {
+        cancel();
+
+        object = null;
+        loaded = false;
+    }
+
+    /**
+     * cancels loading the object.
+     */
+    private void cancel() {
+        if (future != null) {
+            future.cancel(true);
+            future = null;
+        }
+    }
+
+    /**
+     * loads the object, this method is called by a worker thread if an executor is set.
+     *
+     * @return the loaded object
+     */
+    protected abstract T load();
+}
@@ -0,0 +1,148 @@
+package de.agilecoders.wicket.mustache;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * Rendered text that is held by a cache, either as string or as utf-8 encoded bytes. Encoded text needs half
+ * the memory of a string for mostly ascii output; it is decoded in small chunks while it's written, so a cache hit
+ * allocates a single chunk but neither a string nor a char array of the whole text.
+ *
+ * @author miha
+ */
+abstract class CachedText {
+
+    /**
+     * number of characters that are decoded at once
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    /**
+     * creates new cached text.
+     *
+     * @param text    The text to cache
+     * @param encoded whether to store the text as utf-8 encoded bytes
+     * @return new cached text
+     */
+    static CachedText of(final String text, final boolean encoded) {
+        return encoded ? new EncodedText(text) : new StringText(text);
+    }
+
+    /**
+     * @return the number of bytes used to store the text
+     */
+    abstract int weight();
+
+    /**
+     * writes the cached text to given writer.
+     *
+     * @param writer The writer to write to
+     * @throws IOException if the text can't be written
+     */
+    abstract void writeTo(Writer writer) throws IOException;
+
+    /**
+     * @return the cached text
+     */
+    @Override
+    public abstract String toString();
+
+    /**
+     * text that is stored as string.
+     */
+    private static final class StringText extends CachedText {
+        private final String text;
+
+        private StringText(final String text) {
+            this.text = text;
+        }
+
+        @Override
+        int weight() {
+            // characters are stored as utf-16
+            return 2 * text.length();
+        }
+
+        @Override
+        void writeTo(final Writer writer) throws IOException {
+            writer.write(text);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * text that is stored as utf-8 encoded bytes.
+     */
+    private static final class EncodedText extends CachedText {
+        private final byte[] bytes;
+
+        private EncodedText(final String text) {
+            this.bytes = text.getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        int weight() {
+            return bytes.length;
+        }
+
+        @Override
+        void writeTo(final Writer writer) throws IOException {
+            // a decoder per call, a thread local one would pin the application class loader to container threads
+            new Decoder().decode(bytes, writer);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, Charsets.UTF_8);
+        }
+    }
+
+    /**
+     * decodes utf-8 encoded bytes chunk by chunk.
+     */
+    private static final class Decoder {
+        private final CharsetDecoder decoder = Charsets.UTF_8.newDecoder();
+        private final CharBuffer chunk = CharBuffer.allocate(CHUNK_SIZE);
+
+        private void decode(final byte[] bytes, final Writer writer) throws IOException {
+            final ByteBuffer input = ByteBuffer.wrap(bytes);
+            CoderResult result;
+
+            decoder.reset();
+            chunk.clear();
+            do {
+                result = decoder.decode(input, chunk, true);
+                write(result, writer);
+            } while (result.isOverflow());
+
+            do {
+                result = decoder.flush(chunk);
+                write(result, writer);
+            } while (result.isOverflow());
+        }
+
+        /**
+         * writes the decoded chunk and clears it for the next one.
+         */
+        private void write(final CoderResult result, final Writer writer) throws IOException {
+            if (result.isError()) {
+                // the bytes were encoded from a string, so this never happens
+                result.throwException();
+            }
+
+            chunk.flip();
+            writer.write(chunk.array(), chunk.arrayOffset(), chunk.remaining());
+            chunk.clear();
+        }
+    }
+}
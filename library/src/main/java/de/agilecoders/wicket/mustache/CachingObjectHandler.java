@@ -0,0 +1,78 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.reflect.ReflectionObjectHandler;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.lang.reflect.AccessibleObject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link ReflectionObjectHandler} that resolves the method or field of a property once per class. The default
+ * handler searches the class hierarchy each time a value wrapper is created and throws an exception for each
+ * accessor name that doesn't exist, which happens for every new binding, for each scope of the scope stack and
+ * whenever the class of a value changes, e.g. while iterating lists of different types. Missing properties are
+ * cached too.
+ * <p/>
+ * Classes are weak keys and their properties are soft values: a cached method or field references its class, so
+ * the properties of a class must be collectable before the class and its class loader can be unloaded.
+ *
+ * @author miha
+ */
+public class CachingObjectHandler extends ReflectionObjectHandler {
+
+    /**
+     * marks a property that has neither an accessor method nor a field
+     */
+    private static final Object NONE = new Object();
+
+    private final LoadingCache<Class<?>, ConcurrentMap<String, Object>> members = CacheBuilder.newBuilder()
+            .weakKeys()
+            .softValues()
+            .build(new CacheLoader<Class<?>, ConcurrentMap<String, Object>>() {
+                @Override
+                public ConcurrentMap<String, Object> load(final Class<?> key) {
+                    return new ConcurrentHashMap<String, Object>();
+                }
+            });
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The parameter type is the raw {@link Class} of the overridden method, a <code>Class&lt;?&gt;</code> wouldn't
+     * override it.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    protected AccessibleObject findMember(final Class sclass, final String name) {
+        final ConcurrentMap<String, Object> classMembers = members.getUnchecked(sclass);
+
+        Object member = classMembers.get(name);
+        if (member == null) {
+            final AccessibleObject found = super.findMember(sclass, name);
+            member = found != null ? found : NONE;
+
+            classMembers.put(name, member);
+        }
+
+        return member != NONE ? (AccessibleObject) member : null;
+    }
+
+    /**
+     * @return number of classes whose properties are cached
+     */
+    public int size() {
+        members.cleanUp();
+
+        return (int) members.size();
+    }
+
+    /**
+     * removes all cached properties, e.g. to release the classes of an undeployed application.
+     */
+    public void clear() {
+        members.invalidateAll();
+    }
+}
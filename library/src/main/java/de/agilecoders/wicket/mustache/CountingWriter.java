@@ -0,0 +1,62 @@
+package de.agilecoders.wicket.mustache;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A {@link Writer} that delegates to another writer and counts the written characters. Concurrently rendered
+ * values write from different threads, so the counter is only updated while holding the writer's lock.
+ *
+ * @author miha
+ */
+final class CountingWriter extends Writer {
+
+    private final Writer writer;
+    private long length = 0;
+
+    /**
+     * Construct.
+     *
+     * @param writer the target writer
+     */
+    CountingWriter(final Writer writer) {
+        super();
+
+        this.writer = writer;
+    }
+
+    @Override
+    public void write(final char[] buffer, final int offset, final int length) throws IOException {
+        synchronized (lock) {
+            writer.write(buffer, offset, length);
+            this.length += length;
+        }
+    }
+
+    @Override
+    public void write(final String value, final int offset, final int length) throws IOException {
+        synchronized (lock) {
+            writer.write(value, offset, length);
+            this.length += length;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * @return number of written characters
+     */
+    long getLength() {
+        synchronized (lock) {
+            return length;
+        }
+    }
+}
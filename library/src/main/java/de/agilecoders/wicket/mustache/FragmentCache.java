@@ -0,0 +1,192 @@
+package de.agilecoders.wicket.mustache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.wicket.util.lang.Args;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of rendered template sections, which are marked with <code>{{#cache key ttl}}...{{/cache}}</code>.
+ * The cache is bounded by the number of cached characters, least recently used sections will be evicted if the
+ * maximum size is reached. Each section expires after its own time to live. Sections can be stored as utf-8 encoded
+ * bytes, the maximum size is the number of bytes then.
+ *
+ * @author miha
+ */
+public class FragmentCache {
+
+    private final Cache<String, Fragment> cache;
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final boolean compact;
+
+    /**
+     * Construct.
+     *
+     * @param maximumSize the maximum number of cached characters
+     */
+    public FragmentCache(final long maximumSize) {
+        this(maximumSize, false);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param maximumSize the maximum number of cached characters, or bytes if stored as utf-8 encoded bytes
+     * @param compact     whether to store the sections as utf-8 encoded bytes
+     */
+    public FragmentCache(final long maximumSize, final boolean compact) {
+        this.compact = compact;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher(new Weigher<String, Fragment>() {
+                    @Override
+                    public int weigh(final String key, final Fragment fragment) {
+                        // the weight of heap text is given in bytes of utf-16 characters
+                        final int weight = fragment.content.weight();
+
+                        return key.length() + (compact ? weight : weight / 2);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param key The fragment key
+     * @return the rendered fragment or null if it isn't cached or has expired
+     */
+    public String get(final String key) {
+        final Fragment fragment = fragment(key);
+
+        return fragment != null ? fragment.content.toString() : null;
+    }
+
+    /**
+     * writes the rendered fragment with given key to given writer.
+     *
+     * @param key    The fragment key
+     * @param writer The writer to write to
+     * @return true, if the fragment was cached, hasn't expired and was written
+     * @throws IOException if the fragment can't be written
+     */
+    public boolean write(final String key, final Writer writer) throws IOException {
+        final Fragment fragment = fragment(key);
+
+        if (fragment == null) {
+            return false;
+        }
+
+        fragment.content.writeTo(writer);
+
+        return true;
+    }
+
+    /**
+     * @return the fragment with given key or null if it isn't cached or has expired
+     */
+    private Fragment fragment(final String key) {
+        final Fragment fragment = cache.getIfPresent(key);
+
+        if (fragment != null && fragment.expires != 0 && fragment.expires < System.currentTimeMillis()) {
+            cache.invalidate(key);
+            expiredCount.incrementAndGet();
+
+            return null;
+        }
+
+        return fragment;
+    }
+
+    /**
+     * adds a rendered fragment.
+     *
+     * @param key          The fragment key
+     * @param content      The rendered fragment
+     * @param timeToLive   the time to live in milliseconds, 0 to keep the fragment until it's evicted
+     */
+    public void put(final String key, final String content, final long timeToLive) {
+        Args.notNull(key, "key");
+        Args.notNull(content, "content");
+
+        cache.put(key, new Fragment(CachedText.of(content, compact), timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0));
+    }
+
+    /**
+     * removes all fragments whose key starts with given prefix, e.g. to remove a fragment for all locales.
+     *
+     * @param prefix The key prefix
+     */
+    public void invalidate(final String prefix) {
+        for (final String key : cache.asMap().keySet()) {
+            if (key.startsWith(prefix)) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * removes all fragments.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return true, if the sections are stored as utf-8 encoded bytes
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * @return number of cached fragments
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups that returned a cached fragment
+     */
+    public long hitCount() {
+        return cache.stats().hitCount() - expiredCount.get();
+    }
+
+    /**
+     * @return number of lookups that had to render the fragment, including expired fragments
+     */
+    public long missCount() {
+        return cache.stats().missCount() + expiredCount.get();
+    }
+
+    /**
+     * @return number of fragments that were evicted because the cache reached its maximum size
+     */
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return number of fragments that were removed because their time to live expired
+     */
+    public long expiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * a rendered fragment and its expiration time.
+     */
+    private static final class Fragment {
+        private final CachedText content;
+        private final long expires;
+
+        private Fragment(final CachedText content, final long expires) {
+            this.content = content;
+            this.expires = expires;
+        }
+    }
+}
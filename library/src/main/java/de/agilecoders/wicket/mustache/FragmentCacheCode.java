@@ -0,0 +1,180 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheException;
+import com.github.mustachejava.ObjectHandler;
+import com.github.mustachejava.TemplateContext;
+import com.github.mustachejava.codes.DefaultCode;
+import org.apache.wicket.Session;
+import org.apache.wicket.util.string.Strings;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Section code of <code>{{#cache key ttl}}...{{/cache}}</code>. The section is rendered once and its output is
+ * stored in the {@link FragmentCache}; as long as it's cached, the section's values aren't evaluated at all. The
+ * time to live is given in seconds and is optional. The key is combined with the position of the section, which
+ * is added to its start tag by {@link #completeEndTags}, the escape mode and the locale of the current session;
+ * all other values the output depends on must be part of the key. Without fragment cache the section is rendered
+ * like its content.
+ *
+ * @author miha
+ */
+final class FragmentCacheCode extends DefaultCode {
+
+    /**
+     * name of the section
+     */
+    static final String SECTION = "cache";
+
+    /**
+     * prefix of the section position, which is the content hash of the template and the index of the section
+     */
+    private static final String POSITION = "@";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final FragmentCache cache;
+    private final String key;
+    private final long timeToLive;
+
+    /**
+     * @param variable The section variable
+     * @return true, if given section variable is a fragment cache section
+     */
+    static boolean matches(final String variable) {
+        return variable.startsWith(SECTION + " ");
+    }
+
+    /**
+     * @param parts The whitespace separated parts of a section variable
+     * @return true, if the position was already added to the section variable
+     */
+    private static boolean hasPosition(final String[] parts) {
+        return parts[parts.length - 1].startsWith(POSITION);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param tc         The template context
+     * @param oh         The object handler
+     * @param mustache   The section content
+     * @param variable   The section variable, e.g. "cache navigation 60 @hash.0"
+     * @param cache      The fragment cache or null to render the section like its content
+     * @param escapeHtml whether the template escapes HTML characters of its whole output
+     */
+    FragmentCacheCode(final TemplateContext tc, final ObjectHandler oh, final Mustache mustache, final String variable,
+                      final FragmentCache cache, final boolean escapeHtml) {
+        super(tc, oh, mustache, variable, "#");
+
+        String[] parts = WHITESPACE.split(variable.trim());
+        String position = tc.file() + ":" + tc.line();
+        if (hasPosition(parts)) {
+            position = parts[parts.length - 1].substring(POSITION.length());
+            parts = Arrays.copyOf(parts, parts.length - 1);
+        }
+
+        if (parts.length < 2 || parts.length > 3) {
+            throw new MustacheException("fragment cache sections need a key and an optional time to live: "
+                                        + Strings.join(" ", parts) + " in " + tc.file() + ":" + tc.line());
+        }
+
+        this.cache = cache;
+        this.key = parts[1] + "_" + position + "_" + escapeHtml;
+
+        try {
+            this.timeToLive = parts.length == 3 ? TimeUnit.SECONDS.toMillis(Long.parseLong(parts[2])) : 0;
+        } catch (NumberFormatException e) {
+            throw new MustacheException("invalid time to live of fragment cache section: " + Strings.join(" ", parts)
+                                        + " in " + tc.file() + ":" + tc.line());
+        }
+    }
+
+    @Override
+    public Writer execute(final Writer writer, final Object[] scopes) {
+        if (cache == null) {
+            return appendText(run(writer, scopes));
+        }
+
+        final String fragmentKey = Session.exists() ? key + "_" + Session.get().getLocale() : key;
+
+        try {
+            if (!cache.write(fragmentKey, writer)) {
+                final StringWriter sectionWriter = new StringWriter();
+                final Writer result = run(sectionWriter, scopes);
+
+                if (result != sectionWriter) {
+                    // waits for concurrently rendered values
+                    result.close();
+                }
+
+                final String fragment = sectionWriter.toString();
+                cache.put(fragmentKey, fragment, timeToLive);
+                writer.write(fragment);
+            }
+        } catch (IOException e) {
+            throw new MustacheException("can't write cached fragment " + fragmentKey, e);
+        }
+
+        return appendText(writer);
+    }
+
+    /**
+     * adds the position of each section to its start tag, e.g. <code>{{#cache navigation 60 @hash.0}}</code>, so
+     * sections with the same key in different templates or at different positions are cached separately. The
+     * short end tag <code>{{/cache}}</code> is replaced by the complete start tag, which is required by the mustache
+     * parser.
+     *
+     * @param source The template source
+     * @param sm     The start delimiter
+     * @param em     The end delimiter
+     * @return the template source with positions and complete end tags
+     */
+    static String completeEndTags(final String source, final String sm, final String em) {
+        if (!source.contains(SECTION)) {
+            return source;
+        }
+
+        final Pattern tag = Pattern.compile(Pattern.quote(sm) + "\\s*([#/])\\s*(" + SECTION + "\\b.*?)\\s*" + Pattern.quote(em));
+        final Matcher matcher = tag.matcher(source);
+        final Deque<String> sections = new ArrayDeque<String>();
+        final StringBuffer result = new StringBuffer(source.length());
+        String hash = null;
+        int index = 0;
+
+        while (matcher.find()) {
+            String variable = matcher.group(2);
+
+            if ("#".equals(matcher.group(1))) {
+                if (matches(variable) && !hasPosition(WHITESPACE.split(variable))) {
+                    if (hash == null) {
+                        hash = TemplateIdentity.of(source).getHash();
+                    }
+
+                    variable = variable + " " + POSITION + hash + "." + (index++);
+                    matcher.appendReplacement(result, Matcher.quoteReplacement(sm + "#" + variable + em));
+                }
+
+                sections.push(variable);
+            } else if (!sections.isEmpty()) {
+                final String start = sections.pop();
+
+                if (SECTION.equals(variable)) {
+                    matcher.appendReplacement(result, Matcher.quoteReplacement(sm + "/" + start + em));
+                }
+            }
+        }
+        matcher.appendTail(result);
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package de.agilecoders.wicket.mustache;
+
+/**
+ * Listener that is notified about compiled and rendered templates and serialized template data. A listener is
+ * configured with {@link MustacheSettings#setRenderListener(IRenderListener)}; it's called by the rendering thread,
+ * so implementations must be thread safe and fast.
+ *
+ * @author miha
+ */
+public interface IRenderListener {
+
+    /**
+     * called after a template was compiled. Templates with the same source are compiled once, so only the
+     * name of the template that was compiled first is reported.
+     *
+     * @param template The template name
+     * @param nanos    the compile time in nanoseconds
+     */
+    void onCompile(String template, long nanos);
+
+    /**
+     * called after a template was rendered, including the time it took to escape its values.
+     *
+     * @param template The name of the rendered template resource or of the rendering component class
+     * @param nanos    the render time in nanoseconds
+     * @param length   number of rendered characters
+     */
+    void onRender(String template, long nanos, long length);
+
+    /**
+     * called after template data was serialized as json for client side rendering.
+     *
+     * @param source The class name of the component or resource that serialized the data
+     * @param nanos  the serialization time in nanoseconds
+     * @param length number of serialized characters or bytes
+     */
+    void onSerialize(String source, long nanos, long length);
+}
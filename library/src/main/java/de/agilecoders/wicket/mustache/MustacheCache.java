@@ -0,0 +1,166 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.Mustache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.wicket.WicketRuntimeException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A bounded cache of compiled {@link Mustache} templates. Templates are cached by the content hash of their
+ * {@link TemplateIdentity}, so equal sources are compiled once and a modified source is compiled again. Least
+ * recently used templates will be evicted if the maximum size is reached.
+ *
+ * @author miha
+ */
+public class MustacheCache {
+
+    /**
+     * default maximum number of compiled templates
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 500;
+
+    private final Cache<CacheKey, Mustache> cache;
+    private final Cache<Mustache, String> names = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * Construct.
+     *
+     * @param maximumSize the maximum number of compiled templates
+     */
+    public MustacheCache(final long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * returns the compiled template for given identity; if it isn't cached yet, it will be loaded by given loader.
+     *
+     * @param identity   The template identity
+     * @param escapeHtml whether the template escapes HTML characters of its whole output
+     * @param loader     the loader that compiles the template
+     * @return compiled template
+     */
+    public Mustache get(final TemplateIdentity identity, final boolean escapeHtml, final Callable<Mustache> loader) {
+        try {
+            return cache.get(new CacheKey(identity.getHash(), escapeHtml), loader);
+        } catch (ExecutionException e) {
+            throw new WicketRuntimeException("can't compile mustache template: " + identity, e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new WicketRuntimeException("can't compile mustache template: " + identity, e.getCause());
+        }
+    }
+
+    /**
+     * @param identity   The template identity
+     * @param escapeHtml whether the template escapes HTML characters of its whole output
+     * @return compiled template or null if it isn't cached
+     */
+    public Mustache getIfPresent(final TemplateIdentity identity, final boolean escapeHtml) {
+        return cache.getIfPresent(new CacheKey(identity.getHash(), escapeHtml));
+    }
+
+    /**
+     * removes all compiled templates with given identity.
+     *
+     * @param identity The template identity
+     */
+    public void invalidate(final TemplateIdentity identity) {
+        cache.invalidate(new CacheKey(identity.getHash(), true));
+        cache.invalidate(new CacheKey(identity.getHash(), false));
+    }
+
+    /**
+     * removes all compiled templates.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @param mustache The compiled template
+     * @return the name given template was compiled with or null if it wasn't compiled by wicket-mustache
+     */
+    public String getName(final Mustache mustache) {
+        return names.getIfPresent(mustache);
+    }
+
+    /**
+     * remembers the name of a compiled template, the name is removed as soon as the template isn't referenced
+     * anymore.
+     *
+     * @param mustache The compiled template
+     * @param name     The template name
+     */
+    void setName(final Mustache mustache, final String name) {
+        names.put(mustache, name);
+    }
+
+    /**
+     * @return number of cached templates
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups that returned a cached template
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return number of lookups that had to compile the template
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return number of evicted templates
+     */
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * key of a compiled template, a template is compiled once for each content hash and escape mode.
+     */
+    private static final class CacheKey {
+        private final String hash;
+        private final boolean escapeHtml;
+
+        private CacheKey(final String hash, final boolean escapeHtml) {
+            this.hash = hash;
+            this.escapeHtml = escapeHtml;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+
+            final CacheKey that = (CacheKey) o;
+            return escapeHtml == that.escapeHtml && hash.equals(that.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * hash.hashCode() + (escapeHtml ? 1 : 0);
+        }
+    }
+}
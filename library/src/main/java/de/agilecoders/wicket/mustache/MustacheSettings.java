@@ -0,0 +1,499 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.MustacheFactory;
+import com.github.mustachejava.ObjectHandler;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.time.Duration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings of wicket-mustache. All settings must be configured before they are passed to
+ * {@link WicketMustache#install(org.apache.wicket.protocol.http.WebApplication, MustacheSettings)}.
+ *
+ * @author miha
+ */
+public class MustacheSettings {
+
+    private ExecutorService executorService;
+    private Duration renderTimeout;
+    private long maximumCacheSize = MustacheCache.DEFAULT_MAXIMUM_SIZE;
+    private long maximumSourceCacheSize = TemplateSourceCache.DEFAULT_MAXIMUM_SIZE;
+    private long maximumFragmentCacheSize = 0;
+    private long maximumOutputCacheSize = OutputCache.DEFAULT_MAXIMUM_SIZE;
+    private boolean compactOutput = false;
+    private final List<String> preloadPackages = new ArrayList<String>();
+    private int preloadThreads = 1;
+    private boolean preloadRenderFunctions = false;
+    private IRenderListener renderListener;
+    private Duration slowRenderThreshold;
+
+    private ObjectHandler objectHandler;
+    private MustacheFactory factory;
+    private MustacheFactory escapingFactory;
+    private MustacheCache cache;
+    private TemplateSourceCache sourceCache;
+    private FragmentCache fragmentCache;
+    private OutputCache outputCache;
+    private RenderFunctionCompiler renderFunctionCompiler;
+    private ScheduledExecutorService timeoutScheduler;
+
+    /**
+     * creates a bounded executor that can be used to render <code>Callable</code> values concurrently.
+     * If all threads are busy and the queue is full, the rendering thread executes the value itself.
+     *
+     * @param threads       the maximum number of threads
+     * @param queueCapacity the maximum number of waiting values
+     * @return new executor service
+     */
+    public static ExecutorService newExecutorService(final int threads, final int queueCapacity) {
+        return newExecutorService(threads, queueCapacity, new MustacheThreadFactory());
+    }
+
+    /**
+     * creates a bounded executor that can be used to render <code>Callable</code> values concurrently.
+     * If all threads are busy and the queue is full, the rendering thread executes the value itself.
+     * On java 21 and above a virtual thread factory (<code>Thread.ofVirtual().factory()</code>) can be used.
+     *
+     * @param threads       the maximum number of threads
+     * @param queueCapacity the maximum number of waiting values
+     * @param threadFactory the thread factory
+     * @return new executor service
+     */
+    public static ExecutorService newExecutorService(final int threads, final int queueCapacity, final ThreadFactory threadFactory) {
+        Args.withinRange(1, Integer.MAX_VALUE, threads, "threads");
+        Args.withinRange(1, Integer.MAX_VALUE, queueCapacity, "queueCapacity");
+        Args.notNull(threadFactory, "threadFactory");
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                                   new ArrayBlockingQueue<Runnable>(queueCapacity), threadFactory,
+                                                                   new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * sets the executor that renders <code>Callable</code> values concurrently. Templates are rendered
+     * serially if no executor is set. The executor will be shut down when the application is destroyed.
+     *
+     * @param executorService the executor service or null
+     * @return this instance for chaining
+     */
+    public MustacheSettings setExecutorService(final ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    /**
+     * @return the executor that renders <code>Callable</code> values concurrently or null
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * sets the maximum time a render waits for concurrently rendered values.
+     *
+     * @param renderTimeout the timeout or null to wait without a timeout
+     * @return this instance for chaining
+     */
+    public MustacheSettings setRenderTimeout(final Duration renderTimeout) {
+        this.renderTimeout = renderTimeout;
+        return this;
+    }
+
+    /**
+     * @return the maximum time a render waits for concurrently rendered values or null
+     */
+    public Duration getRenderTimeout() {
+        return renderTimeout;
+    }
+
+    /**
+     * sets the maximum number of cached compiled templates.
+     *
+     * @param maximumCacheSize the maximum number of cached compiled templates
+     * @return this instance for chaining
+     */
+    public MustacheSettings setMaximumCacheSize(final long maximumCacheSize) {
+        this.maximumCacheSize = maximumCacheSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of cached compiled templates
+     */
+    public long getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * sets the maximum number of cached template sources.
+     *
+     * @param maximumSourceCacheSize the maximum number of cached template sources
+     * @return this instance for chaining
+     */
+    public MustacheSettings setMaximumSourceCacheSize(final long maximumSourceCacheSize) {
+        this.maximumSourceCacheSize = maximumSourceCacheSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of cached template sources
+     */
+    public long getMaximumSourceCacheSize() {
+        return maximumSourceCacheSize;
+    }
+
+    /**
+     * sets the maximum number of characters of cached <code>{{#cache}}</code> sections. The fragment cache is
+     * disabled by default (0), cache sections are rendered like their content then.
+     *
+     * @param maximumFragmentCacheSize the maximum number of cached characters, or bytes if
+     *                                 {@link #setCompactOutput(boolean) compact output} is enabled
+     * @return this instance for chaining
+     */
+    public MustacheSettings setMaximumFragmentCacheSize(final long maximumFragmentCacheSize) {
+        this.maximumFragmentCacheSize = maximumFragmentCacheSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of characters of cached <code>{{#cache}}</code> sections
+     */
+    public long getMaximumFragmentCacheSize() {
+        return maximumFragmentCacheSize;
+    }
+
+    /**
+     * sets the maximum size in bytes of evaluated templates that are cached for panels with a model version.
+     *
+     * @param maximumOutputCacheSize the maximum size in bytes
+     * @return this instance for chaining
+     */
+    public MustacheSettings setMaximumOutputCacheSize(final long maximumOutputCacheSize) {
+        this.maximumOutputCacheSize = maximumOutputCacheSize;
+        return this;
+    }
+
+    /**
+     * @return the maximum size in bytes of cached evaluated templates
+     */
+    public long getMaximumOutputCacheSize() {
+        return maximumOutputCacheSize;
+    }
+
+    /**
+     * sets whether the output and fragment caches store rendered output as utf-8 encoded bytes instead of strings.
+     * Encoded output needs half the memory for mostly ascii output and is decoded in small chunks on each cache hit.
+     *
+     * @param compactOutput true, to store rendered output as utf-8 encoded bytes
+     * @return this instance for chaining
+     */
+    public MustacheSettings setCompactOutput(final boolean compactOutput) {
+        this.compactOutput = compactOutput;
+        return this;
+    }
+
+    /**
+     * @return true, if rendered output is cached as utf-8 encoded bytes. Default: false
+     */
+    public boolean isCompactOutput() {
+        return compactOutput;
+    }
+
+    /**
+     * adds packages whose <code>*.mustache</code> templates (including sub packages) are compiled
+     * and cached when the application is initialized.
+     *
+     * @param packageNames the package names, e.g. "de.agilecoders.wicket"
+     * @return this instance for chaining
+     */
+    public MustacheSettings addPreloadPackages(final String... packageNames) {
+        for (final String packageName : Args.notNull(packageNames, "packageNames")) {
+            preloadPackages.add(Args.notEmpty(packageName, "packageName"));
+        }
+        return this;
+    }
+
+    /**
+     * @return the packages whose templates are compiled when the application is initialized
+     */
+    public List<String> getPreloadPackages() {
+        return Collections.unmodifiableList(preloadPackages);
+    }
+
+    /**
+     * sets the number of threads that compile templates when the application is initialized.
+     *
+     * @param preloadThreads the number of threads, 1 compiles all templates in the initializing thread
+     * @return this instance for chaining
+     */
+    public MustacheSettings setPreloadThreads(final int preloadThreads) {
+        this.preloadThreads = Args.withinRange(1, Integer.MAX_VALUE, preloadThreads, "preloadThreads");
+        return this;
+    }
+
+    /**
+     * @return the number of threads that compile templates when the application is initialized
+     */
+    public int getPreloadThreads() {
+        return preloadThreads;
+    }
+
+    /**
+     * sets whether preloaded templates are compiled into javascript render functions too, so that the first
+     * request of a {@link de.agilecoders.wicket.mustache.request.resource.MustacheRendererReference} doesn't have to
+     * compile them. Templates that can't be compiled into a render function are reported as preload failures.
+     *
+     * @param preloadRenderFunctions true, to compile render functions when the application is initialized
+     * @return this instance for chaining
+     */
+    public MustacheSettings setPreloadRenderFunctions(final boolean preloadRenderFunctions) {
+        this.preloadRenderFunctions = preloadRenderFunctions;
+        return this;
+    }
+
+    /**
+     * @return true, if preloaded templates are compiled into render functions too. Default: false
+     */
+    public boolean isPreloadRenderFunctions() {
+        return preloadRenderFunctions;
+    }
+
+    /**
+     * sets the listener that is notified about compiled and rendered templates and serialized template data,
+     * e.g. {@link RenderMetrics}. Templates aren't measured if neither a listener nor a slow render threshold
+     * is set.
+     *
+     * @param renderListener the listener or null
+     * @return this instance for chaining
+     */
+    public MustacheSettings setRenderListener(final IRenderListener renderListener) {
+        this.renderListener = renderListener;
+        return this;
+    }
+
+    /**
+     * @return the listener that is notified about compiled and rendered templates or null
+     */
+    public IRenderListener getRenderListener() {
+        return renderListener;
+    }
+
+    /**
+     * sets the render time above which a template is logged as warning.
+     *
+     * @param slowRenderThreshold the threshold or null to disable logging of slow templates
+     * @return this instance for chaining
+     */
+    public MustacheSettings setSlowRenderThreshold(final Duration slowRenderThreshold) {
+        this.slowRenderThreshold = slowRenderThreshold;
+        return this;
+    }
+
+    /**
+     * @return the render time above which a template is logged as warning or null
+     */
+    public Duration getSlowRenderThreshold() {
+        return slowRenderThreshold;
+    }
+
+    /**
+     * @return true, if templates are measured
+     */
+    public boolean isInstrumented() {
+        return renderListener != null || slowRenderThreshold != null;
+    }
+
+    /**
+     * sets the object handler that resolves the values of templates, which is shared by both mustache factories.
+     *
+     * @param objectHandler the object handler
+     * @return this instance for chaining
+     */
+    public MustacheSettings setObjectHandler(final ObjectHandler objectHandler) {
+        this.objectHandler = Args.notNull(objectHandler, "objectHandler");
+        return this;
+    }
+
+    /**
+     * @return the object handler that resolves the values of templates. Default: {@link CachingObjectHandler}
+     */
+    public synchronized ObjectHandler getObjectHandler() {
+        if (objectHandler == null) {
+            objectHandler = new CachingObjectHandler();
+        }
+
+        return objectHandler;
+    }
+
+    /**
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @return the mustache factory for given escape mode
+     */
+    public synchronized MustacheFactory getMustacheFactory(final boolean escapeHtml) {
+        if (escapeHtml) {
+            if (escapingFactory == null) {
+                escapingFactory = newMustacheFactory(true);
+            }
+
+            return escapingFactory;
+        } else {
+            if (factory == null) {
+                factory = newMustacheFactory(false);
+            }
+
+            return factory;
+        }
+    }
+
+    /**
+     * creates a new mustache factory.
+     *
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @return new mustache factory
+     */
+    protected MustacheFactory newMustacheFactory(final boolean escapeHtml) {
+        final WicketMustacheFactory mustacheFactory = new WicketMustacheFactory(escapeHtml);
+        mustacheFactory.setObjectHandler(getObjectHandler());
+        mustacheFactory.setFragmentCache(getFragmentCache());
+
+        if (executorService != null) {
+            mustacheFactory.setExecutorService(executorService);
+        }
+
+        return mustacheFactory;
+    }
+
+    /**
+     * @return the cache of compiled templates
+     */
+    public synchronized MustacheCache getCache() {
+        if (cache == null) {
+            cache = new MustacheCache(maximumCacheSize);
+        }
+
+        return cache;
+    }
+
+    /**
+     * @return the cache of raw template sources
+     */
+    public synchronized TemplateSourceCache getSourceCache() {
+        if (sourceCache == null) {
+            sourceCache = new TemplateSourceCache(maximumSourceCacheSize);
+        }
+
+        return sourceCache;
+    }
+
+    /**
+     * @return the cache of rendered <code>{{#cache}}</code> sections or null if it's disabled
+     */
+    public synchronized FragmentCache getFragmentCache() {
+        if (fragmentCache == null && maximumFragmentCacheSize > 0) {
+            fragmentCache = new FragmentCache(maximumFragmentCacheSize, compactOutput);
+        }
+
+        return fragmentCache;
+    }
+
+    /**
+     * @return the cache of evaluated templates
+     */
+    public synchronized OutputCache getOutputCache() {
+        if (outputCache == null) {
+            outputCache = new OutputCache(maximumOutputCacheSize, compactOutput);
+        }
+
+        return outputCache;
+    }
+
+    /**
+     * @return the compiler of javascript render functions, which keeps the function of each template until the
+     *         settings are destroyed
+     */
+    public synchronized RenderFunctionCompiler getRenderFunctionCompiler() {
+        if (renderFunctionCompiler == null) {
+            renderFunctionCompiler = new RenderFunctionCompiler();
+        }
+
+        return renderFunctionCompiler;
+    }
+
+    /**
+     * @return the scheduler that aborts renders which exceed the render timeout
+     */
+    synchronized ScheduledExecutorService getTimeoutScheduler() {
+        if (timeoutScheduler == null) {
+            timeoutScheduler = Executors.newSingleThreadScheduledExecutor(new MustacheThreadFactory());
+        }
+
+        return timeoutScheduler;
+    }
+
+    /**
+     * shuts down the executor service and releases all cached templates, sources, fragments, outputs, render functions and properties.
+     */
+    public synchronized void destroy() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+
+        if (timeoutScheduler != null) {
+            timeoutScheduler.shutdownNow();
+            timeoutScheduler = null;
+        }
+
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+
+        if (sourceCache != null) {
+            sourceCache.invalidateAll();
+        }
+
+        if (fragmentCache != null) {
+            fragmentCache.invalidateAll();
+        }
+
+        if (outputCache != null) {
+            outputCache.invalidateAll();
+        }
+
+        if (renderFunctionCompiler != null) {
+            renderFunctionCompiler.invalidateAll();
+        }
+
+        if (objectHandler instanceof CachingObjectHandler) {
+            ((CachingObjectHandler) objectHandler).clear();
+        }
+    }
+
+    /**
+     * creates named daemon threads.
+     */
+    static final class MustacheThreadFactory implements ThreadFactory {
+        private static final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "wicket-mustache-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
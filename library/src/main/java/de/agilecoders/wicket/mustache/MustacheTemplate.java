@@ -67,8 +67,7 @@ public class MustacheTemplate extends Behavior {
         }
 
         try {
-            return WicketMustache.compile(WicketMustache.newTemplateReader(templateName.getObject(), component), templateName.getObject(),
-                                          templateData.getObject(), component.getEscapeModelStrings());
+            return WicketMustache.compile(templateName.getObject(), component, templateData.getObject(), component.getEscapeModelStrings());
         } catch (Exception e) {
             throw new WicketRuntimeException("Error while executing mustache template script: " + templateName.getObject(), e);
         }
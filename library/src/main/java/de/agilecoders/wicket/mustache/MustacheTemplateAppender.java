@@ -1,15 +1,19 @@
 package de.agilecoders.wicket.mustache;
 
+import de.agilecoders.wicket.mustache.request.resource.MustacheTemplateReference;
 import org.apache.wicket.Component;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
 import org.apache.wicket.model.IModel;
-import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.string.Strings;
 
 /**
- * Appends a mustache template as data attribute to a assigned component.
+ * Appends a mustache template as data attribute to a assigned component. A shared template is served once
+ * as cacheable javascript resource instead, the data attribute {@link WicketMustache#DATA_TEMPLATE_ID}
+ * contains its id in <code>window.WicketMustacheTemplates</code>.
  *
  * @author miha
  */
@@ -17,6 +21,7 @@ public class MustacheTemplateAppender extends Behavior {
     private static final long serialVersionUID = 14121982L;
 
     private final IModel<String> templateName;
+    private final boolean shared;
 
     /**
      * Construct.
@@ -24,32 +29,70 @@ public class MustacheTemplateAppender extends Behavior {
      * @param templateName The template name
      */
     public MustacheTemplateAppender(final IModel<String> templateName) {
+        this(templateName, false);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param templateName The template name
+     * @param shared       whether to serve the template as shared javascript resource
+     */
+    public MustacheTemplateAppender(final IModel<String> templateName, final boolean shared) {
         super();
 
         this.templateName = templateName;
+        this.shared = shared;
     }
 
     @Override
     public void onComponentTag(final Component component, final ComponentTag tag) {
         super.onComponentTag(component, tag);
 
-        tag.put(WicketMustache.DATA_ID, loadTemplate(component));
+        if (shared) {
+            tag.put(WicketMustache.DATA_TEMPLATE_ID, newTemplateReference(component).getTemplateId());
+        } else {
+            tag.put(WicketMustache.DATA_ID, loadTemplate(component));
+        }
+    }
+
+    @Override
+    public void renderHead(final Component component, final IHeaderResponse response) {
+        super.renderHead(component, response);
+
+        if (shared) {
+            response.render(JavaScriptHeaderItem.forReference(newTemplateReference(component)));
+        }
     }
 
     /**
-     * Evaluate the template.
-     *
-     * @return The evaluated template
+     * @return reference to the shared template
      */
-    private CharSequence loadTemplate(final Component component) {
+    private MustacheTemplateReference newTemplateReference(final Component component) {
+        return MustacheTemplateReference.forComponent(component, templateName(component));
+    }
+
+    /**
+     * @return the template name, "${ComponentSimpleClassName}.mustache" by default
+     */
+    private String templateName(final Component component) {
         if (Strings.isEmpty(templateName.getObject())) {
             templateName.setObject(component.getClass().getSimpleName() + ".mustache");
         }
 
+        return templateName.getObject();
+    }
+
+    /**
+     * Loads the template source, which is read once and cached as long as the template isn't modified.
+     *
+     * @return The template source
+     */
+    private CharSequence loadTemplate(final Component component) {
         try {
-            return IOUtils.toString(WicketMustache.newTemplateReader(templateName.getObject(), component));
-        } catch (Exception e) {
-            throw new WicketRuntimeException("Error while executing mustache template script: " + templateName.getObject(), e);
+            return WicketMustache.templateSource(templateName(component), component);
+        } catch (RuntimeException e) {
+            throw new WicketRuntimeException("Error while loading mustache template: " + templateName.getObject(), e);
         }
     }
 
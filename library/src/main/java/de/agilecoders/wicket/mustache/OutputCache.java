@@ -0,0 +1,148 @@
+package de.agilecoders.wicket.mustache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.wicket.util.lang.Args;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A bounded cache of evaluated templates, which is used by {@link de.agilecoders.wicket.mustache.markup.html.MustachePanel}s
+ * that provide a model version. The cache is bounded by the size of the cached output in bytes, least recently used
+ * output will be evicted if the maximum size is reached. The output can be stored as utf-8 encoded bytes, which
+ * are decoded in small chunks while cached output is written.
+ *
+ * @author miha
+ */
+public class OutputCache {
+
+    /**
+     * default maximum size in bytes
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 16 * 1024 * 1024;
+
+    private final Cache<String, CachedText> cache;
+    private final boolean compact;
+
+    /**
+     * Construct.
+     *
+     * @param maximumSize the maximum size in bytes
+     */
+    public OutputCache(final long maximumSize) {
+        this(maximumSize, false);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param maximumSize the maximum size in bytes
+     * @param compact     whether to store the output as utf-8 encoded bytes
+     */
+    public OutputCache(final long maximumSize, final boolean compact) {
+        this.compact = compact;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize)
+                .weigher(new Weigher<String, CachedText>() {
+                    @Override
+                    public int weigh(final String key, final CachedText output) {
+                        return 2 * key.length() + output.weight();
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param key The output key
+     * @return the cached output or null
+     */
+    public String get(final String key) {
+        final CachedText output = cache.getIfPresent(key);
+
+        return output != null ? output.toString() : null;
+    }
+
+    /**
+     * writes the cached output with given key to given writer.
+     *
+     * @param key    The output key
+     * @param writer The writer to write to
+     * @return true, if the output was cached and written
+     * @throws IOException if the output can't be written
+     */
+    public boolean write(final String key, final Writer writer) throws IOException {
+        final CachedText output = cache.getIfPresent(key);
+
+        if (output == null) {
+            return false;
+        }
+
+        output.writeTo(writer);
+
+        return true;
+    }
+
+    /**
+     * adds an evaluated template.
+     *
+     * @param key    The output key
+     * @param output The evaluated template
+     */
+    public void put(final String key, final String output) {
+        cache.put(Args.notNull(key, "key"), CachedText.of(Args.notNull(output, "output"), compact));
+    }
+
+    /**
+     * removes the output with given key.
+     *
+     * @param key The output key
+     */
+    public void invalidate(final String key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * removes all cached output.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return true, if the output is stored as utf-8 encoded bytes
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * @return number of cached outputs
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups that returned cached output
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return number of lookups that had to evaluate the template
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return number of evicted outputs
+     */
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+}
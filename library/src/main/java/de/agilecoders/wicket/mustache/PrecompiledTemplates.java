@@ -0,0 +1,19 @@
+package de.agilecoders.wicket.mustache;
+
+import java.util.Map;
+
+/**
+ * Mustache templates that were validated at build time by the <code>wicket-mustache-maven-plugin</code>, which
+ * generates an implementation that embeds all template sources. Implementations are registered as
+ * {@link java.util.ServiceLoader} service and are compiled by the {@link TemplatePreloader} when the application is
+ * initialized, without scanning the class path or reading any template resource.
+ *
+ * @author miha
+ */
+public interface PrecompiledTemplates {
+
+    /**
+     * @return the template sources mapped by their class path, e.g. "de/agilecoders/wicket/HomePage.mustache"
+     */
+    Map<String, String> getTemplates();
+}
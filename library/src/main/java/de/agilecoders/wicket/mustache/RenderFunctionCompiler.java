@@ -0,0 +1,333 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.Code;
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheException;
+import com.github.mustachejava.MustacheFactory;
+import com.github.mustachejava.MustacheParser;
+import com.github.mustachejava.MustacheVisitor;
+import com.github.mustachejava.TemplateContext;
+import com.github.mustachejava.codes.DefaultMustache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import de.agilecoders.wicket.mustache.util.Json;
+import org.apache.commons.io.IOUtils;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.util.lang.Args;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Compiles mustache templates into javascript render functions. A render function takes the template data and
+ * returns the rendered template, just like <code>Mustache.render(template, data)</code> of mustache.js does, but
+ * the browser neither has to load mustache.js nor to parse the template. Functions are compiled once per template
+ * source and name and kept until they're invalidated: there is one function per template of the application, so
+ * the cache isn't bounded and a function is never compiled twice, neither on a request nor after an eviction. The
+ * {@link TemplatePreloader} compiles them ahead of time if
+ * {@link MustacheSettings#setPreloadRenderFunctions(boolean)} is enabled.
+ * <p/>
+ * Templates are parsed by mustache.java, so whitespace and partials are handled the same way as on server side:
+ * partials are resolved from the class path and compiled into the function. <code>{{#cache}}</code> sections are
+ * rendered like their content. Template data is json, so lambdas aren't supported.
+ *
+ * @author miha
+ */
+public class RenderFunctionCompiler {
+
+    /**
+     * the helper functions of each render function, they implement the lookup, escaping and section semantics
+     * of mustache.js
+     */
+    private static final String RUNTIME =
+            "var A=Array.isArray||function(v){return Object.prototype.toString.call(v)===\"[object Array]\";},"
+            + "M={\"&\":\"&amp;\",\"<\":\"&lt;\",\">\":\"&gt;\",'\"':\"&quot;\",\"'\":\"&#39;\",\"/\":\"&#x2F;\"};"
+            // looks up a value from the inner most to the outer most context
+            + "function l(c,n){var v,i,j,p;"
+            + "if(n===\".\"){v=c[c.length-1];}else{for(i=c.length-1;i>=0;i--){"
+            + "if(n.indexOf(\".\")>0){p=n.split(\".\");v=c[i];for(j=0;v&&j<p.length;j++){v=v[p[j]];}}"
+            + "else{v=c[i]==null?undefined:c[i][n];}"
+            + "if(v!=null){break;}}}"
+            + "return typeof v===\"function\"?v.call(c[c.length-1]):v;}"
+            // writes a value as it is
+            + "function s(v){return v==null?\"\":String(v);}"
+            // writes an escaped value
+            + "function e(v){return s(v).replace(/[&<>\"'\\/]/g,function(x){return M[x];});}"
+            // renders a section: once per array element, once with an object as context or once for a truthy value
+            + "function S(c,v,f){var b=\"\",i;"
+            + "if(typeof v===\"object\"){if(A(v)){for(i=0;i<v.length;i++){b+=f(c.concat([v[i]]));}return b;}"
+            + "return v?f(c.concat([v])):\"\";}"
+            + "return typeof v!==\"function\"&&v?f(c):\"\";}"
+            // renders an inverted section for falsy values and empty arrays
+            + "function I(c,v,f){return !v||(A(v)&&v.length===0)?f(c):\"\";}";
+
+    private final Cache<String, String> cache;
+
+    /**
+     * Construct.
+     */
+    public RenderFunctionCompiler() {
+        this.cache = CacheBuilder.newBuilder()
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * returns the render function of given template source; it will be compiled if it isn't cached yet.
+     *
+     * @param source The template source
+     * @param name   The template path, e.g. "de/agilecoders/template.mustache". Its extension is used to
+     *               resolve partials
+     * @return javascript expression that returns the render function
+     */
+    public String compile(final TemplateSource source, final String name) {
+        Args.notNull(source, "source");
+        Args.notNull(name, "name");
+
+        try {
+            return cache.get(source.getIdentity().getHash() + ':' + name, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return new Generator().generate(source.getContent(), name);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new WicketRuntimeException("can't compile render function of mustache template: " + name, e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw new WicketRuntimeException("can't compile render function of mustache template: " + name, e.getCause());
+        }
+    }
+
+    /**
+     * removes all render functions.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return number of cached render functions
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups that found a cached render function
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return number of lookups that didn't find a cached render function
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return a javascript string literal of given value
+     */
+    private static String literal(final String value) {
+        // line and paragraph separators aren't allowed in javascript string literals
+        return Json.stringify(value).replace("\u2028", "\\u2028").replace("\u2029", "\\u2029");
+    }
+
+    /**
+     * generates the render function of one template and all its partials. Each template, section and partial
+     * becomes a function that takes the context stack and returns its output.
+     */
+    private static final class Generator {
+        private final StringBuilder functions = new StringBuilder();
+        private final Map<String, String> partials = new HashMap<String, String>();
+        private final DefaultMustacheFactory factory = new DefaultMustacheFactory() {
+            @Override
+            public MustacheVisitor createMustacheVisitor() {
+                return new Visitor(this, Generator.this);
+            }
+        };
+        private int counter = 0;
+
+        /**
+         * @return javascript expression that returns the render function
+         */
+        private String generate(final String source, final String name) {
+            final String root = function(parse(source, name));
+
+            return "(function(){" + RUNTIME + functions + "return function(d){return " + root + "([d]);};})()";
+        }
+
+        /**
+         * @return the code of given template or partial
+         */
+        private CharSequence parse(final String source, final String name) {
+            final String completed = FragmentCacheCode.completeEndTags(source, MustacheParser.DEFAULT_SM, MustacheParser.DEFAULT_EM);
+
+            return ((Body) factory.compile(new StringReader(completed), name)).code;
+        }
+
+        /**
+         * adds a function with given code.
+         *
+         * @return the function name
+         */
+        private String function(final CharSequence code) {
+            return define("f" + (counter++), code);
+        }
+
+        private String define(final String function, final CharSequence code) {
+            functions.append("function ").append(function).append("(c){var b=\"\";").append(code).append("return b;}");
+
+            return function;
+        }
+
+        /**
+         * compiles a partial once, even if it's used recursively.
+         *
+         * @return the function name
+         */
+        private String partial(final String name) {
+            String function = partials.get(name);
+
+            if (function == null) {
+                // the name is reserved before the partial is parsed, so recursive partials call themselves
+                function = "f" + (counter++);
+                partials.put(name, function);
+
+                define(function, parse(read(name), name));
+            }
+
+            return function;
+        }
+
+        private String read(final String name) {
+            final Reader reader = factory.getReader(name);
+
+            try {
+                return IOUtils.toString(reader);
+            } catch (IOException e) {
+                throw new MustacheException("can't read partial " + name, e);
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+    }
+
+    /**
+     * generates the code of a template or section.
+     */
+    private static final class Visitor implements MustacheVisitor {
+        private final MustacheFactory factory;
+        private final Generator generator;
+        private final StringBuilder code = new StringBuilder();
+        private final StringBuilder text = new StringBuilder();
+
+        private Visitor(final MustacheFactory factory, final Generator generator) {
+            this.factory = factory;
+            this.generator = generator;
+        }
+
+        @Override
+        public Mustache mustache(final TemplateContext templateContext) {
+            flush();
+
+            return new Body(templateContext, factory, code);
+        }
+
+        @Override
+        public void iterable(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            flush();
+
+            if (FragmentCacheCode.matches(variable)) {
+                // the client doesn't cache fragments
+                code.append(((Body) mustache).code);
+            } else {
+                code.append("b+=S(c,").append(lookup(variable)).append(',').append(generator.function(((Body) mustache).code)).append(");");
+            }
+        }
+
+        @Override
+        public void notIterable(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            flush();
+            code.append("b+=I(c,").append(lookup(variable)).append(',').append(generator.function(((Body) mustache).code)).append(");");
+        }
+
+        @Override
+        public void partial(final TemplateContext templateContext, final String variable) {
+            // partials are resolved like mustache.java does: by name and the extension of the including template
+            final String file = templateContext.file();
+            final int extension = file.lastIndexOf('.');
+
+            flush();
+            code.append("b+=").append(generator.partial(variable + (extension >= 0 ? file.substring(extension) : ""))).append("(c);");
+        }
+
+        @Override
+        public void value(final TemplateContext templateContext, final String variable, final boolean encoded) {
+            flush();
+            code.append("b+=").append(encoded ? "e(" : "s(").append(lookup(variable)).append(");");
+        }
+
+        @Override
+        public void write(final TemplateContext templateContext, final String text) {
+            this.text.append(text);
+        }
+
+        @Override
+        public void pragma(final TemplateContext templateContext, final String pragma, final String args) {
+            // pragmas don't change the output
+        }
+
+        @Override
+        public void eof(final TemplateContext templateContext) {
+            flush();
+        }
+
+        @Override
+        public void extend(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            throw new MustacheException("template inheritance isn't supported by render functions: {{<" + variable + "}} in "
+                                        + templateContext.file() + ":" + templateContext.line());
+        }
+
+        @Override
+        public void name(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            throw new MustacheException("template inheritance isn't supported by render functions: {{$" + variable + "}} in "
+                                        + templateContext.file() + ":" + templateContext.line());
+        }
+
+        private String lookup(final String variable) {
+            return "l(c," + literal(variable) + ")";
+        }
+
+        /**
+         * writes the collected text, so adjacent text is written at once.
+         */
+        private void flush() {
+            if (text.length() > 0) {
+                code.append("b+=").append(literal(text.toString())).append(';');
+                text.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * the parsed template or section, which only carries its code.
+     */
+    private static final class Body extends DefaultMustache {
+        private final CharSequence code;
+
+        private Body(final TemplateContext templateContext, final MustacheFactory factory, final CharSequence code) {
+            super(templateContext, factory, new Code[0], templateContext.file());
+
+            this.code = code;
+        }
+    }
+}
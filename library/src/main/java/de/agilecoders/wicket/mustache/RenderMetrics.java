@@ -0,0 +1,314 @@
+package de.agilecoders.wicket.mustache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link IRenderListener} that collects counters and latency histograms per template resource or component
+ * class. Renderings are counted per rendering resource or class, even if templates with the same source share
+ * one compiled template. If it's configured as render listener, it's registered as
+ * MBean as soon as the application is initialized.
+ *
+ * @author miha
+ */
+public class RenderMetrics implements IRenderListener, RenderMetricsMBean {
+    private static final Logger LOG = LoggerFactory.getLogger(RenderMetrics.class);
+
+    /**
+     * upper bounds of the histogram buckets in milliseconds, the last bucket holds all slower operations
+     */
+    private static final long[] BUCKETS = new long[]{1, 5, 10, 50, 100, 500, 1000};
+
+    private final ConcurrentMap<String, Statistics> compiles = new ConcurrentHashMap<String, Statistics>();
+    private final ConcurrentMap<String, Statistics> renders = new ConcurrentHashMap<String, Statistics>();
+    private final ConcurrentMap<String, Statistics> serializations = new ConcurrentHashMap<String, Statistics>();
+
+    private ObjectName objectName;
+
+    @Override
+    public void onCompile(final String template, final long nanos) {
+        statistics(compiles, template).add(nanos, 0);
+    }
+
+    @Override
+    public void onRender(final String template, final long nanos, final long length) {
+        statistics(renders, template).add(nanos, length);
+    }
+
+    @Override
+    public void onSerialize(final String source, final long nanos, final long length) {
+        statistics(serializations, source).add(nanos, length);
+    }
+
+    /**
+     * @return the statistics of compiled templates by template name
+     */
+    public Map<String, Statistics> getCompileStatistics() {
+        return Collections.unmodifiableMap(compiles);
+    }
+
+    /**
+     * @return the statistics of rendered templates by template resource or component class name
+     */
+    public Map<String, Statistics> getRenderStatistics() {
+        return Collections.unmodifiableMap(renders);
+    }
+
+    /**
+     * @return the statistics of serialized template data by component or resource class name
+     */
+    public Map<String, Statistics> getSerializeStatistics() {
+        return Collections.unmodifiableMap(serializations);
+    }
+
+    @Override
+    public long getCompileCount() {
+        return count(compiles);
+    }
+
+    @Override
+    public long getCompileTime() {
+        return time(compiles);
+    }
+
+    @Override
+    public long getRenderCount() {
+        return count(renders);
+    }
+
+    @Override
+    public long getRenderTime() {
+        return time(renders);
+    }
+
+    @Override
+    public long getRenderedLength() {
+        return length(renders);
+    }
+
+    @Override
+    public long getSerializeCount() {
+        return count(serializations);
+    }
+
+    @Override
+    public long getSerializeTime() {
+        return time(serializations);
+    }
+
+    @Override
+    public long getSerializedLength() {
+        return length(serializations);
+    }
+
+    @Override
+    public String[] getStatistics() {
+        final List<String> lines = new ArrayList<String>();
+
+        lines(lines, "compile", compiles);
+        lines(lines, "render", renders);
+        lines(lines, "serialize", serializations);
+
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public void reset() {
+        compiles.clear();
+        renders.clear();
+        serializations.clear();
+    }
+
+    /**
+     * registers this instance as MBean of given application.
+     *
+     * @param applicationName The name of the application
+     */
+    public synchronized void register(final String applicationName) {
+        if (objectName != null) {
+            return;
+        }
+
+        try {
+            final ObjectName name = new ObjectName("de.agilecoders.wicket.mustache:type=RenderMetrics,application="
+                                                   + ObjectName.quote(applicationName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("can't register render metrics of application {}", applicationName, e);
+        }
+    }
+
+    /**
+     * removes the registered MBean.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("can't unregister render metrics {}", objectName, e);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    private static Statistics statistics(final ConcurrentMap<String, Statistics> map, final String name) {
+        Statistics statistics = map.get(name);
+
+        if (statistics == null) {
+            final Statistics newStatistics = new Statistics();
+            statistics = map.putIfAbsent(name, newStatistics);
+
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+
+        return statistics;
+    }
+
+    private static long count(final Map<String, Statistics> map) {
+        long count = 0;
+        for (final Statistics statistics : map.values()) {
+            count += statistics.getCount();
+        }
+        return count;
+    }
+
+    private static long time(final Map<String, Statistics> map) {
+        long nanos = 0;
+        for (final Statistics statistics : map.values()) {
+            nanos += statistics.getTotalNanos();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static long length(final Map<String, Statistics> map) {
+        long length = 0;
+        for (final Statistics statistics : map.values()) {
+            length += statistics.getLength();
+        }
+        return length;
+    }
+
+    private static void lines(final List<String> lines, final String operation, final Map<String, Statistics> map) {
+        for (final Map.Entry<String, Statistics> entry : map.entrySet()) {
+            lines.add(operation + " " + entry.getKey() + ": " + entry.getValue());
+        }
+    }
+
+    /**
+     * counters and latency histogram of one operation on one template.
+     */
+    public static final class Statistics {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong length = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+        private void add(final long nanos, final long length) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            this.length.addAndGet(length);
+
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+
+            final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+                bucket++;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+
+        /**
+         * @return number of operations
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return total time of all operations in nanoseconds
+         */
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        /**
+         * @return time of the slowest operation in nanoseconds
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @return total number of written characters or bytes
+         */
+        public long getLength() {
+            return length.get();
+        }
+
+        /**
+         * returns the number of operations per latency bucket. The buckets are bounded by 1, 5, 10, 50, 100, 500
+         * and 1000 milliseconds, the last bucket holds all operations that took one second or longer.
+         *
+         * @return number of operations per bucket
+         */
+        public long[] getHistogram() {
+            final long[] values = new long[histogram.length()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = histogram.get(i);
+            }
+            return values;
+        }
+
+        @Override
+        public String toString() {
+            final long count = getCount();
+            final StringBuilder builder = new StringBuilder()
+                    .append("count=").append(count)
+                    .append(", mean=").append(count > 0 ? TimeUnit.NANOSECONDS.toMicros(getTotalNanos() / count) : 0).append("us")
+                    .append(", max=").append(TimeUnit.NANOSECONDS.toMicros(getMaxNanos())).append("us")
+                    .append(", length=").append(getLength())
+                    .append(", histogram=[");
+
+            final long[] values = getHistogram();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(i < BUCKETS.length ? "<" + BUCKETS[i] + "ms" : ">=" + BUCKETS[BUCKETS.length - 1] + "ms")
+                        .append(':').append(values[i]);
+            }
+
+            return builder.append(']').toString();
+        }
+    }
+}
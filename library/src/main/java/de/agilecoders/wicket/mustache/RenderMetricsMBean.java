@@ -0,0 +1,59 @@
+package de.agilecoders.wicket.mustache;
+
+/**
+ * JMX interface of {@link RenderMetrics}. All times are in milliseconds.
+ *
+ * @author miha
+ */
+public interface RenderMetricsMBean {
+
+    /**
+     * @return number of compiled templates
+     */
+    long getCompileCount();
+
+    /**
+     * @return total compile time
+     */
+    long getCompileTime();
+
+    /**
+     * @return number of rendered templates
+     */
+    long getRenderCount();
+
+    /**
+     * @return total render time
+     */
+    long getRenderTime();
+
+    /**
+     * @return total number of rendered characters
+     */
+    long getRenderedLength();
+
+    /**
+     * @return number of serialized template data
+     */
+    long getSerializeCount();
+
+    /**
+     * @return total serialization time
+     */
+    long getSerializeTime();
+
+    /**
+     * @return total number of serialized characters or bytes
+     */
+    long getSerializedLength();
+
+    /**
+     * @return one line per compiled or rendered template and serializing component
+     */
+    String[] getStatistics();
+
+    /**
+     * removes all statistics.
+     */
+    void reset();
+}
@@ -0,0 +1,97 @@
+package de.agilecoders.wicket.mustache;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+
+import java.io.Serializable;
+
+/**
+ * Identifies a mustache template by the key of its resource and a hash of its content. Compiled templates are
+ * cached by content hash, so templates with the same source share one compiled template, no matter which
+ * resource or component they come from, and a modified resource never returns a stale compiled template.
+ *
+ * @author miha
+ */
+public final class TemplateIdentity implements Serializable {
+    private static final long serialVersionUID = 14121982L;
+
+    private final TemplateKey key;
+    private final String hash;
+
+    /**
+     * creates the identity of a template source without resource key.
+     *
+     * @param source The template source
+     * @return new template identity
+     */
+    public static TemplateIdentity of(final CharSequence source) {
+        return of(null, source);
+    }
+
+    /**
+     * creates the identity of a template source.
+     *
+     * @param key    The key of the template resource or null
+     * @param source The template source
+     * @return new template identity
+     */
+    public static TemplateIdentity of(final TemplateKey key, final CharSequence source) {
+        Args.notNull(source, "source");
+
+        return new TemplateIdentity(key, Hashing.murmur3_128().hashString(source, Charsets.UTF_8).toString());
+    }
+
+    /**
+     * Construct.
+     */
+    private TemplateIdentity(final TemplateKey key, final String hash) {
+        this.key = key;
+        this.hash = hash;
+    }
+
+    /**
+     * @return the key of the template resource or null
+     */
+    public TemplateKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return the hash of the template source
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the name the template is compiled with, which is the resource path or the content hash
+     */
+    public String getName() {
+        return key != null ? key.getPath() : hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TemplateIdentity)) {
+            return false;
+        }
+
+        final TemplateIdentity that = (TemplateIdentity) o;
+        return hash.equals(that.hash) && Objects.equal(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(key, hash);
+    }
+
+    @Override
+    public String toString() {
+        return key != null ? key + "#" + hash : hash;
+    }
+}
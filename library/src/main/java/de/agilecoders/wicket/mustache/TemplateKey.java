@@ -0,0 +1,165 @@
+package de.agilecoders.wicket.mustache;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.lang.Packages;
+import org.apache.wicket.util.string.Strings;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Identifies a mustache template resource by its package, name, locale, style and variation. Templates
+ * are package resources, so all scope classes of the same package share their keys.
+ *
+ * @author miha
+ */
+public final class TemplateKey implements Serializable {
+    private static final long serialVersionUID = 14121982L;
+
+    private final String packageName;
+    private final String name;
+    private final Locale locale;
+    private final String style;
+    private final String variation;
+
+    /**
+     * creates a new key for a template that is located next to given component.
+     *
+     * @param component The component that is used as scope, locale, style and variation provider
+     * @param name      The template name
+     * @return new template key
+     */
+    public static TemplateKey of(final Component component, final String name) {
+        Args.notNull(component, "component");
+
+        return of(component.getClass(), name, component.getLocale(), component.getStyle(), component.getVariation());
+    }
+
+    /**
+     * creates a new key for a template without locale, style and variation.
+     *
+     * @param scope The scope class
+     * @param name  The template name
+     * @return new template key
+     */
+    public static TemplateKey of(final Class<?> scope, final String name) {
+        return of(scope, name, null, null, null);
+    }
+
+    /**
+     * creates a new key for a template with given classpath path, e.g.
+     * <code>de/agilecoders/wicket/template.mustache</code>.
+     *
+     * @param path      The classpath path of the template
+     * @param locale    The locale or null
+     * @param style     The style or null
+     * @param variation The variation or null
+     * @return new template key
+     */
+    public static TemplateKey ofPath(final String path, final Locale locale, final String style, final String variation) {
+        Args.notEmpty(path, "path");
+
+        final String name = Strings.lastPathComponent(path, '/');
+        final String packageName = name.length() < path.length()
+                                   ? path.substring(0, path.length() - name.length() - 1).replace('/', '.')
+                                   : "";
+
+        return new TemplateKey(packageName, name, locale, style, variation);
+    }
+
+    /**
+     * creates a new key.
+     *
+     * @param scope     The scope class
+     * @param name      The template name
+     * @param locale    The locale or null
+     * @param style     The style or null
+     * @param variation The variation or null
+     * @return new template key
+     */
+    public static TemplateKey of(final Class<?> scope, final String name, final Locale locale, final String style, final String variation) {
+        Args.notNull(scope, "scope");
+        Args.notEmpty(name, "name");
+
+        return ofPath(Packages.absolutePath(scope, name), locale, style, variation);
+    }
+
+    /**
+     * Construct.
+     */
+    private TemplateKey(final String packageName, final String name, final Locale locale, final String style, final String variation) {
+        this.packageName = packageName;
+        this.name = name;
+        this.locale = locale;
+        this.style = style;
+        this.variation = variation;
+    }
+
+    /**
+     * @return the package name of the template
+     */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * @return the template name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the classpath path of the template, e.g. <code>de/agilecoders/wicket/template.mustache</code>
+     */
+    public String getPath() {
+        return packageName.length() > 0 ? packageName.replace('.', '/') + "/" + name : name;
+    }
+
+    /**
+     * @return the locale or null
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return the style or null
+     */
+    public String getStyle() {
+        return style;
+    }
+
+    /**
+     * @return the variation or null
+     */
+    public String getVariation() {
+        return variation;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TemplateKey)) {
+            return false;
+        }
+
+        final TemplateKey that = (TemplateKey) o;
+        return packageName.equals(that.packageName) && name.equals(that.name) && Objects.equal(locale, that.locale)
+               && Objects.equal(style, that.style) && Objects.equal(variation, that.variation);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(packageName, name, locale, style, variation);
+    }
+
+    @Override
+    public String toString() {
+        return packageName + "/" + name + "[" + locale + "," + style + "," + variation + "]";
+    }
+}
@@ -0,0 +1,327 @@
+package de.agilecoders.wicket.mustache;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.core.util.resource.UrlResourceStream;
+import org.apache.wicket.util.resource.ResourceUtils;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Scans the configured packages for <code>*.mustache</code> templates and compiles them into the
+ * template cache of the given settings, so that the first requests don't have to parse them. Templates
+ * that were embedded at build time (see {@link PrecompiledTemplates}) are compiled without scanning
+ * the class path or reading their resources.
+ * <p/>
+ * Localized templates (e.g. <code>template_de.mustache</code>) are cached for their locale, templates
+ * with a style or variation are compiled on first use. If enabled, the javascript render functions of all
+ * templates are compiled too.
+ *
+ * @author miha
+ */
+public class TemplatePreloader {
+    private static final Logger LOG = LoggerFactory.getLogger(TemplatePreloader.class);
+
+    /**
+     * file extension of mustache templates
+     */
+    public static final String EXTENSION = ".mustache";
+
+    private final Application application;
+    private final MustacheSettings settings;
+
+    /**
+     * Construct.
+     *
+     * @param application the application whose class loader is scanned
+     * @param settings    the settings that hold the template cache
+     */
+    public TemplatePreloader(final Application application, final MustacheSettings settings) {
+        this.application = application;
+        this.settings = settings;
+    }
+
+    /**
+     * compiles all precompiled templates and all templates of the configured packages for both escape modes.
+     *
+     * @return the report of this run
+     */
+    public Report preload() {
+        final Time start = Time.now();
+        final ClassLoader classLoader = application.getApplicationSettings().getClassResolver().getClassLoader();
+        final Map<String, String> precompiled = precompiled(classLoader);
+        final Set<String> paths = new LinkedHashSet<String>(precompiled.keySet());
+
+        for (final String packageName : settings.getPreloadPackages()) {
+            paths.addAll(scan(classLoader, packageName.replace('.', '/')));
+        }
+
+        if (paths.isEmpty() && settings.getPreloadPackages().isEmpty()) {
+            // nothing to preload
+            return new Report(0, Collections.<String, Throwable>emptyMap(), start.elapsedSince());
+        }
+
+        final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        final int threads = Math.min(settings.getPreloadThreads(), Math.max(1, paths.size()));
+
+        if (threads == 1) {
+            for (final String path : paths) {
+                final Throwable failure = compile(classLoader, precompiled, path);
+
+                if (failure != null) {
+                    failures.put(path, failure);
+                }
+            }
+        } else {
+            failures.putAll(compileConcurrently(classLoader, precompiled, paths, threads));
+        }
+
+        final Report report = new Report(paths.size(), failures, start.elapsedSince());
+
+        for (final Map.Entry<String, Throwable> failure : failures.entrySet()) {
+            LOG.warn("can't preload mustache template: " + failure.getKey(), failure.getValue());
+        }
+        LOG.info("{}", report);
+
+        return report;
+    }
+
+    /**
+     * compiles all templates with a new thread pool of given size.
+     *
+     * @return all failures
+     */
+    private Map<String, Throwable> compileConcurrently(final ClassLoader classLoader, final Map<String, String> precompiled,
+                                                       final Set<String> paths, final int threads) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new MustacheSettings.MustacheThreadFactory());
+        final Map<String, Future<Throwable>> results = new LinkedHashMap<String, Future<Throwable>>();
+        final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+
+        try {
+            for (final String path : paths) {
+                results.put(path, executor.submit(new Callable<Throwable>() {
+                    @Override
+                    public Throwable call() {
+                        return compile(classLoader, precompiled, path);
+                    }
+                }));
+            }
+
+            for (final Map.Entry<String, Future<Throwable>> result : results.entrySet()) {
+                try {
+                    final Throwable failure = result.getValue().get();
+
+                    if (failure != null) {
+                        failures.put(result.getKey(), failure);
+                    }
+                } catch (ExecutionException e) {
+                    failures.put(result.getKey(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return failures;
+    }
+
+    /**
+     * compiles the template with given path, either from its embedded source or from its resource.
+     *
+     * @return the failure or null if the template was compiled
+     */
+    private Throwable compile(final ClassLoader classLoader, final Map<String, String> precompiled, final String path) {
+        final ResourceUtils.PathLocale pathLocale = ResourceUtils.getLocaleFromFilename(path);
+        final TemplateKey key = pathLocale != null
+                                ? TemplateKey.ofPath(pathLocale.path, pathLocale.locale, null, null)
+                                : TemplateKey.ofPath(path, null, null, null);
+
+        final TemplateSource source;
+        if (precompiled.containsKey(path)) {
+            source = TemplateSource.of(key, precompiled.get(path));
+        } else {
+            final URL url = classLoader.getResource(path);
+            if (url == null) {
+                return new IOException("can't find template resource: " + path);
+            }
+
+            try {
+                source = settings.getSourceCache().get(key, new UrlResourceStream(url));
+            } catch (RuntimeException e) {
+                return e;
+            }
+        }
+
+        try {
+            // the compiled templates are shared with all sources of the same content
+            WicketMustache.mustache(settings, source, true);
+            WicketMustache.mustache(settings, source, false);
+
+            if (settings.isPreloadRenderFunctions()) {
+                // render functions are registered with the path of the unlocalized template
+                settings.getRenderFunctionCompiler().compile(source, key.getPath());
+            }
+
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * finds all templates that were embedded at build time.
+     *
+     * @param classLoader The class loader to search
+     * @return the template sources mapped by path
+     */
+    private Map<String, String> precompiled(final ClassLoader classLoader) {
+        final Map<String, String> templates = new LinkedHashMap<String, String>();
+
+        try {
+            for (final PrecompiledTemplates precompiledTemplates : ServiceLoader.load(PrecompiledTemplates.class, classLoader)) {
+                templates.putAll(precompiledTemplates.getTemplates());
+            }
+        } catch (ServiceConfigurationError e) {
+            LOG.warn("can't load precompiled mustache templates", e);
+        }
+
+        return templates;
+    }
+
+    /**
+     * finds all template paths in given package directory and its sub directories.
+     *
+     * @param classLoader The class loader to scan
+     * @param packagePath The package path, e.g. "de/agilecoders"
+     * @return all template paths
+     */
+    private List<String> scan(final ClassLoader classLoader, final String packagePath) {
+        final List<String> paths = new ArrayList<String>();
+
+        try {
+            final Enumeration<URL> roots = classLoader.getResources(packagePath);
+
+            while (roots.hasMoreElements()) {
+                final URL root = roots.nextElement();
+
+                if ("file".equals(root.getProtocol())) {
+                    scanDirectory(new File(URLDecoder.decode(root.getPath(), "UTF-8")), packagePath, paths);
+                } else if ("jar".equals(root.getProtocol())) {
+                    scanJar(root, packagePath, paths);
+                } else {
+                    LOG.warn("can't scan {} for mustache templates, unsupported protocol", root);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("can't scan package " + packagePath + " for mustache templates", e);
+        }
+
+        return paths;
+    }
+
+    private void scanDirectory(final File directory, final String path, final List<String> paths) {
+        final File[] files = directory.listFiles();
+
+        if (files != null) {
+            for (final File file : files) {
+                if (file.isDirectory()) {
+                    scanDirectory(file, path + "/" + file.getName(), paths);
+                } else if (file.getName().endsWith(EXTENSION)) {
+                    paths.add(path + "/" + file.getName());
+                }
+            }
+        }
+    }
+
+    private void scanJar(final URL root, final String packagePath, final List<String> paths) throws IOException {
+        final URLConnection connection = root.openConnection();
+
+        if (connection instanceof JarURLConnection) {
+            connection.setUseCaches(false);
+
+            final JarFile jar = ((JarURLConnection) connection).getJarFile();
+            try {
+                final Enumeration<JarEntry> entries = jar.entries();
+
+                while (entries.hasMoreElements()) {
+                    final JarEntry entry = entries.nextElement();
+
+                    if (!entry.isDirectory() && entry.getName().startsWith(packagePath + "/")
+                        && entry.getName().endsWith(EXTENSION)) {
+                        paths.add(entry.getName());
+                    }
+                }
+            } finally {
+                jar.close();
+            }
+        }
+    }
+
+    /**
+     * The result of a preload run.
+     */
+    public static final class Report {
+        private final int templates;
+        private final Map<String, Throwable> failures;
+        private final Duration duration;
+
+        private Report(final int templates, final Map<String, Throwable> failures, final Duration duration) {
+            this.templates = templates;
+            this.failures = Collections.unmodifiableMap(failures);
+            this.duration = duration;
+        }
+
+        /**
+         * @return number of found templates
+         */
+        public int getTemplates() {
+            return templates;
+        }
+
+        /**
+         * @return all templates that can't be compiled, mapped by path
+         */
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the time it took to scan and compile all templates
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+
+        @Override
+        public String toString() {
+            return "preloaded " + (templates - failures.size()) + " of " + templates + " mustache templates in " + duration;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.agilecoders.wicket.mustache;
+
+import org.apache.wicket.util.lang.Args;
+
+/**
+ * The raw source of a mustache template together with its {@link TemplateIdentity}.
+ *
+ * @author miha
+ */
+public final class TemplateSource {
+
+    private final TemplateIdentity identity;
+    private final String content;
+
+    /**
+     * creates a template source without resource key.
+     *
+     * @param content The template source
+     * @return new template source
+     */
+    public static TemplateSource of(final String content) {
+        return of(null, content);
+    }
+
+    /**
+     * creates a template source.
+     *
+     * @param key     The key of the template resource or null
+     * @param content The template source
+     * @return new template source
+     */
+    public static TemplateSource of(final TemplateKey key, final String content) {
+        Args.notNull(content, "content");
+
+        return new TemplateSource(TemplateIdentity.of(key, content), content);
+    }
+
+    /**
+     * Construct.
+     */
+    private TemplateSource(final TemplateIdentity identity, final String content) {
+        this.identity = identity;
+        this.content = content;
+    }
+
+    /**
+     * @return the identity of the template
+     */
+    public TemplateIdentity getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return the template source
+     */
+    public String getContent() {
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return identity.toString();
+    }
+}
@@ -0,0 +1,141 @@
+package de.agilecoders.wicket.mustache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.wicket.resource.ResourceUtil;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A bounded cache of raw template sources. A cached source is only returned as long as the last modification
+ * time of its resource doesn't change, otherwise the resource will be read again. The identity of a source is
+ * computed once, when it's read.
+ *
+ * @author miha
+ */
+public class TemplateSourceCache {
+
+    /**
+     * default maximum number of template sources
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 500;
+
+    private final Cache<TemplateKey, Entry> cache;
+
+    /**
+     * Construct.
+     *
+     * @param maximumSize the maximum number of template sources
+     */
+    public TemplateSourceCache(final long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * returns the source of given template resource. The resource will only be read if its source isn't cached
+     * yet or if it was modified since it was cached.
+     *
+     * @param key      The template key
+     * @param resource The template resource
+     * @return the template source
+     */
+    public TemplateSource get(final TemplateKey key, final IResourceStream resource) {
+        Args.notNull(key, "key");
+        Args.notNull(resource, "resource");
+
+        final Time lastModified = resource.lastModifiedTime();
+        final Entry cached = cache.getIfPresent(key);
+
+        if (cached != null && Objects.equal(cached.lastModified, lastModified)) {
+            return cached.source;
+        }
+
+        final String content = ResourceUtil.readString(resource);
+        if (content == null) {
+            throw new IllegalArgumentException("can't find template content of " + key);
+        }
+
+        final TemplateSource source = TemplateSource.of(key, content);
+        cache.put(key, new Entry(source, lastModified));
+
+        return source;
+    }
+
+    /**
+     * returns the cached source of given key without checking whether its resource was modified.
+     *
+     * @param key The template key
+     * @return the cached template source or null
+     */
+    public TemplateSource getIfPresent(final TemplateKey key) {
+        final Entry cached = cache.getIfPresent(Args.notNull(key, "key"));
+
+        return cached != null ? cached.source : null;
+    }
+
+    /**
+     * caches given source with another key, e.g. the key of a locale that falls back to the resource of the source.
+     * The alias is read again by {@link #get(TemplateKey, IResourceStream)}.
+     *
+     * @param key    The template key
+     * @param source The template source
+     */
+    public void alias(final TemplateKey key, final TemplateSource source) {
+        cache.put(Args.notNull(key, "key"), new Entry(Args.notNull(source, "source"), null));
+    }
+
+    /**
+     * removes the source with given key.
+     *
+     * @param key The template key
+     */
+    public void invalidate(final TemplateKey key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * removes all sources.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return number of cached sources
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups that found a cached source, including sources of modified resources
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return number of lookups that didn't find a cached source
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * a template source and the modification time of its resource.
+     */
+    private static final class Entry {
+        private final TemplateSource source;
+        private final Time lastModified;
+
+        private Entry(final TemplateSource source, final Time lastModified) {
+            this.source = source;
+            this.lastModified = lastModified;
+        }
+    }
+}
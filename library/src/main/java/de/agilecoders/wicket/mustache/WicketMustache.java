@@ -1,24 +1,42 @@
 package de.agilecoders.wicket.mustache;
 
-import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
-import com.github.mustachejava.MustacheFactory;
+import com.github.mustachejava.MustacheException;
+import de.agilecoders.wicket.mustache.markup.html.ClientSideMustachePanel;
 import de.agilecoders.wicket.mustache.markup.html.MustachePanel;
+import de.agilecoders.wicket.mustache.typed.TypedRenderer;
+import de.agilecoders.wicket.mustache.util.Json;
 import de.agilecoders.wicket.webjars.WicketWebjars;
+import org.apache.wicket.Application;
 import org.apache.wicket.Component;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.application.IComponentOnBeforeRenderListener;
 import org.apache.wicket.core.util.resource.PackageResourceStream;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.protocol.http.WebApplication;
+import org.apache.wicket.util.IProvider;
+import org.apache.wicket.util.io.IOUtils;
 import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Objects;
+import org.apache.wicket.util.lang.Packages;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
-import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base util class.
@@ -26,15 +44,75 @@ import java.io.StringWriter;
  * @author miha
  */
 public final class WicketMustache {
+    private static final Logger LOG = LoggerFactory.getLogger(WicketMustache.class);
 
     public static final String DATA_ID = "data-template";
+    public static final String DATA_TEMPLATE_ID = "data-template-id";
 
     /**
-     * holds the mustache factory.
+     * holds the default settings, which are used if wicket-mustache wasn't installed.
      */
     private static final class MustacheHolder {
 
-        private static final MustacheFactory factory = new DefaultMustacheFactory();
+        private static final MustacheSettings settings = new MustacheSettings();
+    }
+
+    /**
+     * application meta data key of the installed settings.
+     */
+    private static final MetaDataKey<MustacheSettings> SETTINGS_KEY = new MetaDataKey<MustacheSettings>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    /**
+     * @return the settings of the current application or the default settings if there's no application
+     *         or wicket-mustache wasn't installed.
+     */
+    public static MustacheSettings settings() {
+        if (Application.exists()) {
+            final MustacheSettings settings = Application.get().getMetaData(SETTINGS_KEY);
+
+            if (settings != null) {
+                return settings;
+            }
+        }
+
+        return MustacheHolder.settings;
+    }
+
+    /**
+     * @return the cache of compiled templates
+     */
+    public static MustacheCache cache() {
+        return settings().getCache();
+    }
+
+    /**
+     * @return the cache of rendered <code>{{#cache}}</code> sections or null if it's disabled
+     */
+    public static FragmentCache fragmentCache() {
+        return settings().getFragmentCache();
+    }
+
+    /**
+     * @return the cache of evaluated templates of panels with a model version
+     */
+    public static OutputCache outputCache() {
+        return settings().getOutputCache();
+    }
+
+    /**
+     * @return the cache of raw template sources
+     */
+    public static TemplateSourceCache sourceCache() {
+        return settings().getSourceCache();
+    }
+
+    /**
+     * @return the compiler of javascript render functions
+     */
+    public static RenderFunctionCompiler renderFunctionCompiler() {
+        return settings().getRenderFunctionCompiler();
     }
 
     /**
@@ -68,10 +146,83 @@ public final class WicketMustache {
      * @return new javascript that renders the mustache template with given content
      */
     public static CharSequence createRenderScript(final Component component, final CharSequence content) {
-        final String markupId = component.getMarkupId(true);
+        return createRenderScript(component, createTemplateScript(component), content);
+    }
 
-        return "$(\"#" + markupId + "\").html(Mustache.render($(\"#" + markupId +
-               "\").attr('" + WicketMustache.DATA_ID + "'), " + content + "))";
+    /**
+     * creates a mustache javascript that renders a template with given content.
+     *
+     * @param component The mustache component
+     * @param template  javascript expression that returns the template source
+     * @param content   The content to render
+     * @return new javascript that renders the mustache template with given content
+     */
+    public static CharSequence createRenderScript(final Component component, final CharSequence template, final CharSequence content) {
+        return createRenderScriptPrefix(component, template) + content + createRenderScriptSuffix();
+    }
+
+    /**
+     * creates the part of the mustache render script that precedes the content.
+     *
+     * @param component The mustache component
+     * @return javascript that precedes the content to render
+     */
+    public static String createRenderScriptPrefix(final Component component) {
+        return createRenderScriptPrefix(component, createTemplateScript(component));
+    }
+
+    /**
+     * creates the part of the mustache render script that precedes the content.
+     *
+     * @param component The mustache component
+     * @param template  javascript expression that returns the template source
+     * @return javascript that precedes the content to render
+     */
+    public static String createRenderScriptPrefix(final Component component, final CharSequence template) {
+        return "$(\"#" + component.getMarkupId(true) + "\").html(Mustache.render(" + template + ", ";
+    }
+
+    /**
+     * creates a javascript that renders a template with a precompiled render function and given content.
+     *
+     * @param component      The mustache component
+     * @param renderFunction javascript expression that returns the render function
+     * @param content        The content to render
+     * @return new javascript that renders the template with given content
+     * @see de.agilecoders.wicket.mustache.request.resource.MustacheRendererReference
+     */
+    public static CharSequence createRenderFunctionScript(final Component component, final CharSequence renderFunction,
+                                                          final CharSequence content) {
+        return createRenderFunctionScriptPrefix(component, renderFunction) + content + createRenderScriptSuffix();
+    }
+
+    /**
+     * creates the part of the render function script that precedes the content.
+     *
+     * @param component      The mustache component
+     * @param renderFunction javascript expression that returns the render function
+     * @return javascript that precedes the content to render
+     */
+    public static String createRenderFunctionScriptPrefix(final Component component, final CharSequence renderFunction) {
+        return "$(\"#" + component.getMarkupId(true) + "\").html(" + renderFunction + "(";
+    }
+
+    /**
+     * creates a javascript expression that returns the template source of the {@link #DATA_ID} attribute of
+     * given component.
+     *
+     * @param component The mustache component
+     * @return javascript expression that returns the template source
+     */
+    public static String createTemplateScript(final Component component) {
+        return "$(\"#" + component.getMarkupId(true) + "\").attr('" + WicketMustache.DATA_ID + "')";
+    }
+
+    /**
+     * @return the part of the mustache render script that follows the content.
+     */
+    public static String createRenderScriptSuffix() {
+        return "))";
     }
 
     /**
@@ -82,18 +233,263 @@ public final class WicketMustache {
      * @param content   The content to render
      */
     public static void appendRenderScript(final Component component, final IHeaderResponse response, final CharSequence content) {
-        response.render(OnDomReadyHeaderItem.forScript(createRenderScript(component, content)));
+        appendRenderScript(component, response, createTemplateScript(component), content);
+    }
+
+    /**
+     * appends a mustache javascript that renders a template with given content.
+     *
+     * @param component The mustache component
+     * @param response  current header response
+     * @param template  javascript expression that returns the template source
+     * @param content   The content to render
+     */
+    public static void appendRenderScript(final Component component, final IHeaderResponse response, final CharSequence template,
+                                          final CharSequence content) {
+        response.render(OnDomReadyHeaderItem.forScript(createRenderScript(component, template, content)));
     }
 
     /**
-     * Gets a new reader for the mustache template.
+     * Gets a new reader for the mustache template. The source is read from the source cache, so the reader
+     * doesn't hold any resources.
      *
      * @param templateName The name of the template
      * @param component    the reference component
      * @return reader for the mustache template
+     * @throws ResourceStreamNotFoundException if the template can't be found
      */
     public static Reader newTemplateReader(final String templateName, final Component component) throws ResourceStreamNotFoundException {
-        return new InputStreamReader(new PackageResourceStream(component.getClass(), templateName).getInputStream());
+        try {
+            return new StringReader(templateSource(templateName, component));
+        } catch (WicketRuntimeException e) {
+            if (e.getCause() instanceof ResourceStreamNotFoundException) {
+                throw (ResourceStreamNotFoundException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets a new resource stream for the mustache template that is located next to given component. The
+     * locale, style and variation of the component are used to find the template.
+     *
+     * @param templateName The name of the template
+     * @param component    the reference component
+     * @return resource stream of the mustache template
+     */
+    public static IResourceStream newTemplateResourceStream(final String templateName, final Component component) {
+        return new PackageResourceStream(component.getClass(), templateName, component.getLocale(), component.getStyle(),
+                                         component.getVariation());
+    }
+
+    /**
+     * returns the compiled template for given key. The template source is cached by key as long as its resource
+     * isn't modified, the compiled template is cached by the identity of the source.
+     *
+     * @param key              The template key
+     * @param templateResource provides the template resource
+     * @param escapeHtml       whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    public static Mustache mustache(final TemplateKey key, final IProvider<IResourceStream> templateResource, final boolean escapeHtml) {
+        return mustache(settings(), key, templateResource, escapeHtml);
+    }
+
+    /**
+     * returns the compiled template for given key from the caches of given settings.
+     *
+     * @param settings         The settings that hold the caches and factories
+     * @param key              The template key
+     * @param templateResource provides the template resource
+     * @param escapeHtml       whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    static Mustache mustache(final MustacheSettings settings, final TemplateKey key,
+                             final IProvider<IResourceStream> templateResource, final boolean escapeHtml) {
+        Args.notNull(key, "key");
+        Args.notNull(templateResource, "templateResource");
+
+        final IResourceStream resource = templateResource.get();
+        if (resource == null) {
+            throw new WicketRuntimeException("can't find template resource: " + key);
+        }
+
+        return mustache(settings, settings.getSourceCache().get(key, resource), key.getPath(), escapeHtml);
+    }
+
+    /**
+     * returns the compiled template of given source. Sources with the same content share one compiled template.
+     *
+     * @param source     The template source
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    public static Mustache mustache(final TemplateSource source, final boolean escapeHtml) {
+        Args.notNull(source, "source");
+
+        return mustache(settings(), source, escapeHtml);
+    }
+
+    /**
+     * returns the compiled template of given source from the cache of given settings.
+     *
+     * @param settings   The settings that hold the cache and factories
+     * @param source     The template source
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    static Mustache mustache(final MustacheSettings settings, final TemplateSource source, final boolean escapeHtml) {
+        return mustache(settings, source, source.getIdentity().getName(), escapeHtml);
+    }
+
+    /**
+     * returns the compiled template of given source from the cache of given settings.
+     *
+     * @param settings   The settings that hold the cache and factories
+     * @param source     The template source
+     * @param name       The name the template is compiled with, if it isn't cached yet
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    private static Mustache mustache(final MustacheSettings settings, final TemplateSource source, final String name,
+                                     final boolean escapeHtml) {
+        return settings.getCache().get(source.getIdentity(), escapeHtml, new Callable<Mustache>() {
+            @Override
+            public Mustache call() throws Exception {
+                final IRenderListener listener = settings.getRenderListener();
+                final long start = listener != null ? System.nanoTime() : 0;
+                final Mustache mustache = settings.getMustacheFactory(escapeHtml).compile(new StringReader(source.getContent()), name);
+
+                if (listener != null) {
+                    listener.onCompile(name, System.nanoTime() - start);
+                }
+
+                settings.getCache().setName(mustache, name);
+
+                return mustache;
+            }
+        });
+    }
+
+    /**
+     * returns the compiled template that is located next to given component. The template is cached for the
+     * locale, style and variation of the resource that was found, so all components whose locale falls back to
+     * the same resource share one compiled template.
+     *
+     * @param templateName The name of the template
+     * @param component    the reference component
+     * @param escapeHtml   whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    public static Mustache mustache(final String templateName, final Component component, final boolean escapeHtml) {
+        final MustacheSettings settings = settings();
+
+        return mustache(settings, locatedSource(settings, templateName, component), escapeHtml);
+    }
+
+    /**
+     * returns the raw source of the template that is located next to given component. The source is read once
+     * and cached; modified template resources are only read again in development mode.
+     *
+     * @param templateName The name of the template
+     * @param component    the reference component
+     * @return the template source
+     */
+    public static String templateSource(final String templateName, final Component component) {
+        return locatedSource(settings(), templateName, component).getContent();
+    }
+
+    /**
+     * returns the source of the template that is located next to given component. Outside of development mode
+     * the template is only located and checked for modifications if no source is cached for the locale, style and
+     * variation of the component yet.
+     *
+     * @param settings     The settings that hold the source cache
+     * @param templateName The name of the template
+     * @param component    the reference component
+     * @return the template source
+     */
+    private static TemplateSource locatedSource(final MustacheSettings settings, final String templateName, final Component component) {
+        final TemplateSourceCache sourceCache = settings.getSourceCache();
+        final boolean development = Application.get().usesDevelopmentConfig();
+        final TemplateKey requestedKey = TemplateKey.of(component, templateName);
+
+        if (!development) {
+            final TemplateSource cached = sourceCache.getIfPresent(requestedKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final IResourceStream resource = locateTemplate(templateName, component);
+        final TemplateKey key = newTemplateKey(templateName, component, resource);
+        final TemplateSource source = sourceCache.get(key, resource);
+
+        if (!development && !key.equals(requestedKey)) {
+            // the locale, style or variation of the component falls back to the resource that was found
+            sourceCache.alias(requestedKey, source);
+        }
+
+        return source;
+    }
+
+    /**
+     * locates the template that is located next to given component with the locale, style and variation
+     * of the component.
+     *
+     * @param templateName The name of the template
+     * @param component    the reference component
+     * @return the template resource
+     */
+    private static IResourceStream locateTemplate(final String templateName, final Component component) {
+        final Class<?> scope = component.getClass();
+        final IResourceStream resource = Application.get().getResourceSettings().getResourceStreamLocator()
+                .locate(scope, Packages.absolutePath(scope, templateName), component.getStyle(), component.getVariation(),
+                        component.getLocale(), null, false);
+
+        if (resource == null) {
+            final String message = "can't find mustache template " + templateName + " of " + scope.getName();
+            throw new WicketRuntimeException(message, new ResourceStreamNotFoundException(message));
+        }
+
+        return resource;
+    }
+
+    /**
+     * @return the key of a located template with the locale, style and variation of the resource that was found
+     */
+    private static TemplateKey newTemplateKey(final String templateName, final Component component, final IResourceStream resource) {
+        return TemplateKey.of(component.getClass(), templateName, resource.getLocale(), resource.getStyle(), resource.getVariation());
+    }
+
+    /**
+     * compiles the template that is located next to given component with given template data. The compiled
+     * template will be cached.
+     *
+     * @param templateName The name of the template
+     * @param component    the reference component
+     * @param data         The template data
+     * @param escapeHtml   whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    public static String compile(final String templateName, final Component component, final Object data, final boolean escapeHtml) {
+        final MustacheSettings settings = settings();
+        final TemplateSource source = locatedSource(settings, templateName, component);
+
+        return compile(mustache(settings, source, escapeHtml), data, source.getIdentity().getName());
+    }
+
+    /**
+     * compiles the template with given key and template data. The compiled template will be cached.
+     *
+     * @param key              The template key
+     * @param templateResource provides the template resource if the template must be compiled
+     * @param data             The template data
+     * @param escapeHtml       whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    public static String compile(final TemplateKey key, final IProvider<IResourceStream> templateResource, final Object data, final boolean escapeHtml) {
+        return compile(mustache(key, templateResource, escapeHtml), data, key.getPath());
     }
 
     /**
@@ -125,38 +521,358 @@ public final class WicketMustache {
      * @param templateReader The template reader
      * @param templateId     The template id
      * @param data           The template data
-     * @param escapeHtml     whether to escape HTML characters
+     * @param escapeHtml     whether to escape HTML characters of the whole output
      * @return compiled template
      */
     public static String compile(final Reader templateReader, final String templateId, final Object data, final boolean escapeHtml) {
+        return compile(mustache(templateReader, templateId, escapeHtml), data, templateId);
+    }
+
+    /**
+     * compiles given template. The reader is consumed and closed, the compiled template is cached by the
+     * identity of its content and shared with all templates with the same source.
+     *
+     * @param templateReader The template reader
+     * @param templateId     The template id, which is used as name if the template must be compiled
+     * @param escapeHtml     whether to escape HTML characters of the whole output
+     * @return compiled template
+     */
+    public static Mustache mustache(final Reader templateReader, final String templateId, final boolean escapeHtml) {
+        Args.notNull(templateReader, "templateReader");
+
+        final String content;
+        try {
+            content = IOUtils.toString(templateReader);
+        } catch (IOException e) {
+            throw new WicketRuntimeException("can't read mustache template: " + templateId, e);
+        } finally {
+            IOUtils.closeQuietly(templateReader);
+        }
+
+        return mustache(settings(), TemplateSource.of(content), templateId, escapeHtml);
+    }
+
+    /**
+     * executes given compiled template with given template data and writes the result to given writer. If an
+     * executor is configured, <code>Callable</code> values are rendered concurrently and this method waits for
+     * them, but not longer than the configured render timeout. The render listener is notified with the name
+     * the template was compiled with.
+     *
+     * @param mustache The compiled template
+     * @param data     The template data
+     * @param writer   The writer to write the result to
+     */
+    public static void render(final Mustache mustache, final Object data, final Writer writer) {
+        render(mustache, data, writer, null);
+    }
+
+    /**
+     * executes given compiled template with given template data and writes the result to given writer. Compiled
+     * templates are shared by all resources with the same source, so the render listener and the slow render log
+     * use given name, e.g. the template resource or the rendering component class.
+     *
+     * @param mustache The compiled template
+     * @param data     The template data
+     * @param writer   The writer to write the result to
+     * @param name     The name the rendering is measured with or null to use the name the template was compiled with
+     */
+    public static void render(final Mustache mustache, final Object data, final Writer writer, final String name) {
+        final MustacheSettings settings = settings();
+
+        if (!settings.isInstrumented()) {
+            execute(mustache, data, writer, settings);
+            return;
+        }
+
+        final CountingWriter countingWriter = new CountingWriter(writer);
+        final long start = System.nanoTime();
+
+        execute(mustache, data, countingWriter, settings);
+
+        onRender(name != null ? name : Objects.defaultIfNull(settings.getCache().getName(mustache), "unnamed"),
+                 System.nanoTime() - start, countingWriter.getLength(), settings);
+    }
+
+    /**
+     * renders given template data with a typed renderer and writes the result to given writer. A typed renderer
+     * reads all values synchronously and doesn't support <code>Callable</code> values, so neither the executor
+     * nor the render timeout apply; the render listener and the slow render log are notified like for compiled
+     * templates.
+     *
+     * @param renderer   The typed renderer
+     * @param data       The template data
+     * @param writer     The writer to write the result to
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @param name       The name the rendering is measured with or null to use the renderer class name
+     */
+    public static void render(final TypedRenderer<?> renderer, final Object data, final Writer writer, final boolean escapeHtml,
+                              final String name) {
+        final MustacheSettings settings = settings();
+
+        if (!settings.isInstrumented()) {
+            renderer.renderObject(data, writer, escapeHtml);
+            return;
+        }
+
+        final CountingWriter countingWriter = new CountingWriter(writer);
+        final long start = System.nanoTime();
+
+        renderer.renderObject(data, countingWriter, escapeHtml);
+
+        onRender(name != null ? name : renderer.getClass().getName(), System.nanoTime() - start, countingWriter.getLength(), settings);
+    }
+
+    /**
+     * renders given template data with a typed renderer.
+     *
+     * @param renderer   The typed renderer
+     * @param data       The template data
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @param name       The name the rendering is measured with or null to use the renderer class name
+     * @return evaluated template
+     */
+    public static String compile(final TypedRenderer<?> renderer, final Object data, final boolean escapeHtml, final String name) {
+        final StringWriter writer = new StringWriter();
+
+        render(renderer, data, writer, escapeHtml, name);
+
+        return writer.toString();
+    }
+
+    /**
+     * notifies the render listener and logs slow renderings.
+     *
+     * @param name     The name the rendering is measured with
+     * @param nanos    The render time in nanoseconds
+     * @param length   The number of written characters
+     * @param settings The current settings
+     */
+    private static void onRender(final String name, final long nanos, final long length, final MustacheSettings settings) {
+        final IRenderListener listener = settings.getRenderListener();
+        if (listener != null) {
+            listener.onRender(name, nanos, length);
+        }
+
+        final Duration threshold = settings.getSlowRenderThreshold();
+        if (threshold != null && TimeUnit.NANOSECONDS.toMillis(nanos) > threshold.getMilliseconds()) {
+            LOG.warn("slow mustache template {} was rendered in {} ms ({} characters)",
+                     new Object[]{name, TimeUnit.NANOSECONDS.toMillis(nanos), length});
+        }
+    }
+
+    /**
+     * executes given compiled template with given template data and writes the result to given writer.
+     *
+     * @param mustache The compiled template
+     * @param data     The template data
+     * @param writer   The writer to write the result to
+     * @param settings The current settings
+     */
+    private static void execute(final Mustache mustache, final Object data, final Writer writer, final MustacheSettings settings) {
+        try {
+            if (settings.getExecutorService() == null) {
+                mustache.execute(writer, data).flush();
+            } else {
+                renderConcurrently(mustache, data, writer, settings);
+            }
+        } catch (IOException e) {
+            throw new WicketRuntimeException("can't write mustache template", e);
+        }
+    }
+
+    /**
+     * executes given compiled template and waits for all concurrently rendered values.
+     *
+     * @param mustache The compiled template
+     * @param data     The template data
+     * @param writer   The writer to write the result to
+     * @param settings The current settings
+     * @throws IOException if the result can't be written
+     */
+    private static void renderConcurrently(final Mustache mustache, final Object data, final Writer writer,
+                                           final MustacheSettings settings) throws IOException {
+        final AbortableWriter abortableWriter = new AbortableWriter(writer);
+        final Writer result = mustache.execute(abortableWriter, data);
+        final Duration timeout = settings.getRenderTimeout();
+
+        if (timeout == null) {
+            // waits for all concurrently rendered values
+            result.close();
+            return;
+        }
+
+        final Thread renderThread = Thread.currentThread();
+        final ScheduledFuture<?> abort = settings.getTimeoutScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                abortableWriter.abort(renderThread);
+            }
+        }, timeout.getMilliseconds(), TimeUnit.MILLISECONDS);
+
+        boolean aborted = false;
+        try {
+            result.close();
+        } catch (MustacheException e) {
+            if (!abortableWriter.isAborted()) {
+                throw e;
+            }
+        } finally {
+            // the render is completed before the abort is cancelled, an abort that fires in between is ignored then
+            aborted = abortableWriter.complete();
+            abort.cancel(false);
+        }
+
+        if (aborted) {
+            throw new WicketRuntimeException("mustache template wasn't rendered within " + timeout);
+        }
+    }
+
+    /**
+     * executes given compiled template with given template data.
+     *
+     * @param mustache The compiled template
+     * @param data     The template data
+     * @return evaluated template
+     */
+    public static String compile(final Mustache mustache, final Object data) {
+        return compile(mustache, data, null);
+    }
+
+    /**
+     * executes given compiled template with given template data.
+     *
+     * @param mustache The compiled template
+     * @param data     The template data
+     * @param name     The name the rendering is measured with or null to use the name the template was compiled with
+     * @return evaluated template
+     */
+    public static String compile(final Mustache mustache, final Object data, final String name) {
         // create a writer for capturing the mustache output
         final StringWriter writer = new StringWriter();
-        final String evaluatedTemplate;
 
         // execute the mustache script and capture the output in writer
-        final Mustache mustache = MustacheHolder.factory.compile(templateReader, templateId);
-        mustache.execute(writer, data);
-        writer.flush();
+        render(mustache, data, writer, name);
+
+        return writer.toString();
+    }
+
+    /**
+     * serializes given template data as json string and notifies the render listener.
+     *
+     * @param data   The template data
+     * @param source The component or resource class that serializes the data
+     * @return the template data as json string
+     */
+    public static String toJson(final Object data, final Class<?> source) {
+        final IRenderListener listener = settings().getRenderListener();
+        if (listener == null) {
+            return Json.stringify(data);
+        }
 
-        // convert writer to string.
-        evaluatedTemplate = writer.toString();
+        final long start = System.nanoTime();
+        final String json = Json.stringify(data);
+        listener.onSerialize(source.getName(), System.nanoTime() - start, json.length());
+
+        return json;
+    }
 
-        if (escapeHtml) {
-            // encode the result in order to get valid html output that
-            // does not break the rest of the page
-            return Strings.escapeMarkup(evaluatedTemplate).toString();
+    /**
+     * serializes given template data as utf-8 encoded json and notifies the render listener.
+     *
+     * @param data   The template data
+     * @param source The component or resource class that serializes the data
+     * @return the template data as utf-8 encoded json
+     */
+    public static byte[] toJsonBytes(final Object data, final Class<?> source) {
+        final IRenderListener listener = settings().getRenderListener();
+        if (listener == null) {
+            return Json.toBytes(data);
+        }
+
+        final long start = System.nanoTime();
+        final byte[] json = Json.toBytes(data);
+        listener.onSerialize(source.getName(), System.nanoTime() - start, json.length);
+
+        return json;
+    }
+
+    /**
+     * writes given template data as json to given writer and notifies the render listener.
+     *
+     * @param data   The template data
+     * @param writer The writer to write the json to
+     * @param source The component or resource class that serializes the data
+     */
+    public static void writeJson(final Object data, final Writer writer, final Class<?> source) {
+        final IRenderListener listener = settings().getRenderListener();
+        if (listener == null) {
+            Json.write(data, writer);
+            return;
         }
 
-        return evaluatedTemplate;
+        final CountingWriter countingWriter = new CountingWriter(writer);
+        final long start = System.nanoTime();
+        Json.write(data, countingWriter);
+        listener.onSerialize(source.getName(), System.nanoTime() - start, countingWriter.getLength());
     }
 
     /**
-     * install all mustache configurations
+     * install all mustache configurations with default settings.
      *
      * @param app current web application
      */
     public static void install(final WebApplication app) {
+        install(app, new MustacheSettings());
+    }
+
+    /**
+     * install all mustache configurations. The templates of all configured preload packages and all
+     * {@link PrecompiledTemplates} are compiled as soon as the application is initialized, the settings are
+     * destroyed together with the application.
+     * {@link AsyncModel}s of mustache panels start loading before the page or ajax response is rendered.
+     *
+     * @param app      current web application
+     * @param settings the settings to use
+     */
+    public static void install(final WebApplication app, final MustacheSettings settings) {
+        Args.notNull(settings, "settings");
+
         WicketWebjars.install(app);
+
+        app.setMetaData(SETTINGS_KEY, settings);
+        app.getComponentPreOnBeforeRenderListeners().add(new IComponentOnBeforeRenderListener() {
+            @Override
+            public void onBeforeRender(final Component component) {
+                // all visible components are prepared before the first one is rendered
+                if (component instanceof MustachePanel || component instanceof ClientSideMustachePanel) {
+                    final IModel<?> model = component.getDefaultModel();
+
+                    if (model instanceof AsyncModel) {
+                        ((AsyncModel<?>) model).start();
+                    }
+                }
+            }
+        });
+        app.getApplicationListeners().add(new IApplicationListener() {
+            @Override
+            public void onAfterInitialized(final Application application) {
+                if (settings.getRenderListener() instanceof RenderMetrics) {
+                    ((RenderMetrics) settings.getRenderListener()).register(application.getName());
+                }
+
+                // compiles precompiled templates and the templates of all preload packages
+                new TemplatePreloader(application, settings).preload();
+            }
+
+            @Override
+            public void onBeforeDestroyed(final Application application) {
+                if (settings.getRenderListener() instanceof RenderMetrics) {
+                    ((RenderMetrics) settings.getRenderListener()).unregister();
+                }
+
+                settings.destroy();
+            }
+        });
     }
 
     /**
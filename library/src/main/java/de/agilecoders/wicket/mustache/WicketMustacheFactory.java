@@ -0,0 +1,155 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.DefaultMustacheVisitor;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheException;
+import com.github.mustachejava.MustacheParser;
+import com.github.mustachejava.MustacheVisitor;
+import com.github.mustachejava.TemplateContext;
+import com.github.mustachejava.codes.ValueCode;
+import de.agilecoders.wicket.mustache.util.Html;
+import org.apache.wicket.util.io.IOUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+
+/**
+ * {@link DefaultMustacheFactory} that escapes values (<code>{{value}}</code>) the same way wicket
+ * escapes model strings, triple mustaches (<code>{{{value}}}</code>) are written as they are. If
+ * "escapeHtml" is true, the whole output is escaped once more, including the template markup,
+ * escaped values and triple mustaches; the template markup is escaped while the template is compiled
+ * and values are escaped on the fly, without any buffer. Escaping only the values would change the output
+ * of existing templates with "escapeHtml", so the template markup is still escaped like before.
+ * If a {@link FragmentCache} is set, sections like <code>{{#cache key ttl}}...{{/cache}}</code>
+ * are rendered once and then served from the cache, otherwise they're rendered like their content.
+ *
+ * @author miha
+ */
+public class WicketMustacheFactory extends DefaultMustacheFactory {
+
+    private final boolean escapeHtml;
+    private FragmentCache fragmentCache;
+
+    /**
+     * Construct.
+     *
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     */
+    public WicketMustacheFactory(final boolean escapeHtml) {
+        super();
+
+        this.escapeHtml = escapeHtml;
+    }
+
+    /**
+     * @return true, if HTML characters of the whole output are escaped
+     */
+    public boolean isEscapeHtml() {
+        return escapeHtml;
+    }
+
+    /**
+     * sets the cache of rendered <code>{{#cache}}</code> sections. Must be set before templates are compiled.
+     *
+     * @param fragmentCache the fragment cache or null to render cache sections like their content
+     */
+    public void setFragmentCache(final FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * @param variable The section variable
+     * @return true, if given section is a <code>{{#cache}}</code> section
+     */
+    public static boolean isFragmentCacheSection(final String variable) {
+        return FragmentCacheCode.matches(variable);
+    }
+
+    @Override
+    public MustacheVisitor createMustacheVisitor() {
+        return new DefaultMustacheVisitor(this) {
+            @Override
+            public void iterable(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+                if (FragmentCacheCode.matches(variable)) {
+                    list.add(new FragmentCacheCode(templateContext, getObjectHandler(), mustache, variable, fragmentCache, escapeHtml));
+                } else {
+                    super.iterable(templateContext, variable, mustache);
+                }
+            }
+
+            @Override
+            public void value(final TemplateContext templateContext, final String variable, final boolean encoded) {
+                if (escapeHtml) {
+                    list.add(new EscapedValueCode(templateContext, WicketMustacheFactory.this, variable, encoded));
+                } else {
+                    super.value(templateContext, variable, encoded);
+                }
+            }
+
+            @Override
+            public void write(final TemplateContext templateContext, final String text) {
+                super.write(templateContext, escapeHtml ? Html.escape(text) : text);
+            }
+        };
+    }
+
+    @Override
+    public Mustache compile(final Reader reader, final String file, final String sm, final String em) {
+        return super.compile(completeEndTags(reader, sm, em), file, sm, em);
+    }
+
+    @Override
+    public Reader getReader(final String resourceName) {
+        // partials
+        return completeEndTags(super.getReader(resourceName), MustacheParser.DEFAULT_SM, MustacheParser.DEFAULT_EM);
+    }
+
+    /**
+     * @return a reader whose <code>{{#cache}}</code> sections have positions and complete end tags
+     */
+    private Reader completeEndTags(final Reader reader, final String sm, final String em) {
+        try {
+            return new StringReader(FragmentCacheCode.completeEndTags(IOUtils.toString(reader), sm, em));
+        } catch (IOException e) {
+            throw new MustacheException("can't read mustache template", e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    @Override
+    public void encode(final String value, final Writer writer) {
+        try {
+            Html.escape(value, writer);
+        } catch (IOException e) {
+            throw new MustacheException("Failed to encode value: " + value, e);
+        }
+    }
+
+    /**
+     * A value of a template whose whole output is escaped: a triple mustache is escaped once, a value that is
+     * escaped anyway is escaped twice.
+     */
+    private static final class EscapedValueCode extends ValueCode {
+        private final boolean encoded;
+
+        private EscapedValueCode(final TemplateContext templateContext, final DefaultMustacheFactory factory,
+                                 final String variable, final boolean encoded) {
+            super(templateContext, factory, variable, encoded);
+
+            this.encoded = encoded;
+        }
+
+        @Override
+        protected void execute(final Writer writer, final String value) throws IOException {
+            if (encoded) {
+                Html.escapeTwice(value, writer);
+            } else {
+                Html.escape(value, writer);
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package de.agilecoders.wicket.mustache.markup.head;
+
+import de.agilecoders.wicket.mustache.WicketMustache;
+import de.agilecoders.wicket.mustache.request.resource.MustacheJsReference;
+import de.agilecoders.wicket.mustache.util.Json;
+import de.agilecoders.wicket.mustache.util.ResponseWriter;
+import org.apache.wicket.Application;
+import org.apache.wicket.Component;
+import org.apache.wicket.core.util.string.JavaScriptUtils;
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.util.lang.Args;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link HeaderItem} that renders a mustache template on dom ready. The template data is serialized
+ * directly into the header response, so no separate json string of the template data is created. Wicket
+ * buffers the whole page header before it's written, so the header still holds the whole template data.
+ * <p/>
+ * The script will be rendered as is and must not be used in ajax requests, use
+ * {@link WicketMustache#createRenderScript(Component, CharSequence)} there.
+ *
+ * @author miha
+ */
+public class MustacheRenderHeaderItem extends HeaderItem {
+    private static final long serialVersionUID = 14121982L;
+
+    private final String markupId;
+    private final String prefix;
+    private final Object data;
+    private final boolean json;
+    private final boolean mustacheJs;
+
+    /**
+     * creates a new {@link MustacheRenderHeaderItem} that renders the template of given component.
+     *
+     * @param component The mustache component
+     * @param data      The template data
+     * @return new header item
+     */
+    public static MustacheRenderHeaderItem forComponent(final Component component, final Object data) {
+        return new MustacheRenderHeaderItem(component, data);
+    }
+
+    /**
+     * creates a new {@link MustacheRenderHeaderItem} that renders the template of given component.
+     *
+     * @param component The mustache component
+     * @param template  javascript expression that returns the template source
+     * @param data      The template data
+     * @return new header item
+     */
+    public static MustacheRenderHeaderItem forComponent(final Component component, final CharSequence template, final Object data) {
+        return new MustacheRenderHeaderItem(component, template, data);
+    }
+
+    /**
+     * creates a new {@link MustacheRenderHeaderItem} that renders the template of given component with a
+     * precompiled render function, mustache.js isn't required.
+     *
+     * @param component      The mustache component
+     * @param renderFunction javascript expression that returns the render function
+     * @param data           The template data
+     * @return new header item
+     * @see de.agilecoders.wicket.mustache.request.resource.MustacheRendererReference
+     */
+    public static MustacheRenderHeaderItem forRenderFunction(final Component component, final CharSequence renderFunction,
+                                                             final Object data) {
+        Args.notNull(component, "component");
+        Args.notNull(renderFunction, "renderFunction");
+
+        return new MustacheRenderHeaderItem(component, WicketMustache.createRenderFunctionScriptPrefix(component, renderFunction),
+                                            data, false, false);
+    }
+
+    /**
+     * creates a new {@link MustacheRenderHeaderItem} that renders the template of given component with template
+     * data that is already serialized as json.
+     *
+     * @param component The mustache component
+     * @param template  javascript expression that returns the template source
+     * @param json      The template data as json
+     * @return new header item
+     */
+    public static MustacheRenderHeaderItem forComponentJson(final Component component, final CharSequence template,
+                                                            final CharSequence json) {
+        Args.notNull(component, "component");
+        Args.notNull(template, "template");
+
+        return new MustacheRenderHeaderItem(component, WicketMustache.createRenderScriptPrefix(component, template),
+                                            Args.notNull(json, "json").toString(), true, true);
+    }
+
+    /**
+     * creates a new {@link MustacheRenderHeaderItem} that renders the template of given component with a
+     * precompiled render function and template data that is already serialized as json.
+     *
+     * @param component      The mustache component
+     * @param renderFunction javascript expression that returns the render function
+     * @param json           The template data as json
+     * @return new header item
+     */
+    public static MustacheRenderHeaderItem forRenderFunctionJson(final Component component, final CharSequence renderFunction,
+                                                                 final CharSequence json) {
+        Args.notNull(component, "component");
+        Args.notNull(renderFunction, "renderFunction");
+
+        return new MustacheRenderHeaderItem(component, WicketMustache.createRenderFunctionScriptPrefix(component, renderFunction),
+                                            Args.notNull(json, "json").toString(), true, false);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param component The mustache component
+     * @param data      The template data
+     */
+    public MustacheRenderHeaderItem(final Component component, final Object data) {
+        this(component, WicketMustache.createTemplateScript(Args.notNull(component, "component")), data);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param component The mustache component
+     * @param template  javascript expression that returns the template source
+     * @param data      The template data
+     */
+    public MustacheRenderHeaderItem(final Component component, final CharSequence template, final Object data) {
+        this(Args.notNull(component, "component"), WicketMustache.createRenderScriptPrefix(component, Args.notNull(template, "template")),
+             data, false, true);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param component  The mustache component
+     * @param prefix     javascript that precedes the template data
+     * @param data       The template data
+     * @param json       whether the template data is already serialized as json
+     * @param mustacheJs whether the script requires mustache.js
+     */
+    private MustacheRenderHeaderItem(final Component component, final String prefix, final Object data, final boolean json,
+                                     final boolean mustacheJs) {
+        super();
+
+        this.markupId = component.getMarkupId(true);
+        this.prefix = prefix;
+        this.data = data;
+        this.json = json;
+        this.mustacheJs = mustacheJs;
+    }
+
+    @Override
+    public void render(final Response response) {
+        JavaScriptUtils.writeOpenTag(response);
+        response.write("Wicket.Event.add(window, \"domready\", function(event) { ");
+        response.write(prefix);
+        if (json) {
+            response.write((CharSequence) data);
+        } else {
+            Json.write(data, new ResponseWriter(response));
+        }
+        response.write(WicketMustache.createRenderScriptSuffix());
+        response.write(";});");
+        JavaScriptUtils.writeCloseTag(response);
+    }
+
+    @Override
+    public Iterable<?> getRenderTokens() {
+        return Collections.singletonList("mustache-render-" + markupId);
+    }
+
+    @Override
+    public List<HeaderItem> getDependencies() {
+        final List<HeaderItem> dependencies = super.getDependencies();
+        dependencies.add(JavaScriptHeaderItem.forReference(Application.get().getJavaScriptLibrarySettings().getWicketEventReference()));
+
+        if (mustacheJs) {
+            dependencies.add(JavaScriptHeaderItem.forReference(MustacheJsReference.instance()));
+        }
+
+        return dependencies;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof MustacheRenderHeaderItem && markupId.equals(((MustacheRenderHeaderItem) o).markupId);
+    }
+
+    @Override
+    public int hashCode() {
+        return markupId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "MustacheRenderHeaderItem('" + markupId + "')";
+    }
+}
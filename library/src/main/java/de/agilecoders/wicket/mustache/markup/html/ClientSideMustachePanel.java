@@ -1,33 +1,87 @@
 package de.agilecoders.wicket.mustache.markup.html;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import de.agilecoders.wicket.mustache.TemplateKey;
+import de.agilecoders.wicket.mustache.TemplateSource;
 import de.agilecoders.wicket.mustache.WicketMustache;
+import de.agilecoders.wicket.mustache.markup.head.MustacheRenderHeaderItem;
 import de.agilecoders.wicket.mustache.request.resource.MustacheJsReference;
+import de.agilecoders.wicket.mustache.request.resource.MustacheRendererReference;
+import de.agilecoders.wicket.mustache.request.resource.MustacheTemplateReference;
+import de.agilecoders.wicket.mustache.request.resource.WicketMustacheJsReference;
 import de.agilecoders.wicket.mustache.util.Json;
+import de.agilecoders.wicket.mustache.util.JsonPatch;
+import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.core.util.resource.PackageResourceStream;
+import org.apache.wicket.core.util.string.JavaScriptUtils;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.IMarkupResourceStreamProvider;
+import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.panel.GenericPanel;
+import org.apache.wicket.markup.html.panel.IMarkupSourcingStrategy;
+import org.apache.wicket.markup.html.panel.PanelMarkupSourcingStrategy;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.resource.ResourceUtil;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.StringResourceStream;
+import org.codehaus.jackson.node.ArrayNode;
 
 /**
  * Panel that displays the result of rendering a mustache template. The template itself can be any
  * {@link IResourceStream} implementation, of which there are a number of convenient
  * implementations in the {@link org.apache.wicket.util} package. The model can be any serializable
  * object, which will be used by mustache while rendering the template. The template will be rendered
- * on client side.
+ * on client side, or on server side if the panel is pre-rendered.
  *
  * @author miha
  */
 public abstract class ClientSideMustachePanel extends GenericPanel<Object> implements IMarkupResourceStreamProvider {
     private static final long serialVersionUID = 14121982L;
 
-    private String templateData;
+    /**
+     * whether a panel class overrides {@link #createTemplateDataAsJsonString()}, it's looked up once per class;
+     * panel classes are weakly referenced, so they don't keep the classloader of a redeployed application
+     */
+    private static final LoadingCache<Class<?>, Boolean> JSON_OVERRIDDEN = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Class<?>, Boolean>() {
+                @Override
+                public Boolean load(final Class<?> panelClass) {
+                    for (Class<?> type = panelClass; type != ClientSideMustachePanel.class; type = type.getSuperclass()) {
+                        try {
+                            type.getDeclaredMethod("createTemplateDataAsJsonString");
+                            return Boolean.TRUE;
+                        } catch (NoSuchMethodException e) {
+                            // not overridden by this class
+                        }
+                    }
+
+                    return Boolean.FALSE;
+                }
+            });
+
+    private transient String templateData;
+    private transient String prerenderedTemplateData;
+
+    /**
+     * the json template data that was sent to the client, only kept if the panel is incremental. It isn't
+     * serialized with the page; a panel whose page was deserialized is rendered again on its next update.
+     */
+    private transient String renderedTemplateData;
+
+    /**
+     * renders an incremental panel again if the client has no template data to patch
+     */
+    private RenderAgainBehavior renderAgainBehavior;
 
     /**
      * Construct.
@@ -50,6 +104,15 @@ public abstract class ClientSideMustachePanel extends GenericPanel<Object> imple
         setOutputMarkupId(true);
     }
 
+    @Override
+    protected void onInitialize() {
+        super.onInitialize();
+
+        if (isIncremental()) {
+            add(renderAgainBehavior = new RenderAgainBehavior());
+        }
+    }
+
     @Override
     protected void onComponentTag(ComponentTag tag) {
         super.onComponentTag(tag);
@@ -58,30 +121,255 @@ public abstract class ClientSideMustachePanel extends GenericPanel<Object> imple
             throw new WicketRuntimeException("you can't add components to a ClientSideMustachePanel");
         }
 
-        tag.getAttributes().put(WicketMustache.DATA_ID, newTemplate());
+        final MustacheTemplateReference reference = newTemplateReference();
+        if (reference != null) {
+            tag.getAttributes().put(WicketMustache.DATA_TEMPLATE_ID, reference.getTemplateId());
+        } else {
+            tag.getAttributes().put(WicketMustache.DATA_ID, newTemplate());
+        }
     }
 
     @Override
     public void renderHead(final IHeaderResponse response) {
         super.renderHead(response);
 
-        response.render(JavaScriptHeaderItem.forReference(MustacheJsReference.instance()));
+        if (!isPrecompiled()) {
+            response.render(JavaScriptHeaderItem.forReference(MustacheJsReference.instance()));
+        }
+
+        if (isIncremental()) {
+            response.render(JavaScriptHeaderItem.forReference(WicketMustacheJsReference.instance()));
+        }
+
+        final MustacheTemplateReference reference = newTemplateReference();
+        if (reference != null) {
+            response.render(JavaScriptHeaderItem.forReference(reference));
+        }
 
         appendRenderScript(response);
     }
 
+    @Override
+    protected IMarkupSourcingStrategy newMarkupSourcingStrategy() {
+        return new PanelMarkupSourcingStrategy(false) {
+            @Override
+            public void onComponentTagBody(final Component component, final MarkupStream markupStream, final ComponentTag openTag) {
+                if (isPrerendered() && newTemplateDataUrl() == null) {
+                    // the template is rendered on server side instead of writing the empty associated markup
+                    replaceComponentTagBody(markupStream, openTag, prerender());
+                } else {
+                    super.onComponentTagBody(component, markupStream, openTag);
+                }
+            }
+        };
+    }
+
+    /**
+     * Whether the template is rendered on server side. A pre-rendered panel writes the rendered template into
+     * its body, so the content is visible before any javascript is executed. The client renders the template
+     * only on later updates: an incremental panel hands the template data over to the client (hydration), all
+     * other panels are rendered on server side again if they're added to an ajax request target.
+     * Pre-rendering isn't possible if the template data is fetched from an url (see {@link #newTemplateDataUrl()}).
+     *
+     * @return true, if the template is rendered on server side. Default: false
+     */
+    protected boolean isPrerendered() {
+        return false;
+    }
+
+    /**
+     * renders the template on server side. The template data is converted to json and back, so that the server
+     * renders exactly the same data as the client does.
+     *
+     * @return the rendered template
+     */
+    private String prerender() {
+        final Object data = Json.fromJson(prerenderedTemplateData(), Object.class);
+
+        return WicketMustache.compile(WicketMustache.mustache(newTemplateSource(), false), data, getClass().getName());
+    }
+
     /**
-     * @return new javascript that renders mustache compiled content into panels body.
+     * @return the json template data that is used to pre-render this panel, it's created once per request
+     */
+    private String prerenderedTemplateData() {
+        if (prerenderedTemplateData == null) {
+            prerenderedTemplateData = createTemplateDataAsJsonString().toString();
+        }
+
+        return prerenderedTemplateData;
+    }
+
+    /**
+     * appends a javascript that renders mustache compiled content into panels body. The template data
+     * will be written directly into the response if this isn't an ajax request.
+     *
+     * @param response current header response
      */
     protected void appendRenderScript(final IHeaderResponse response) {
-        WicketMustache.appendRenderScript(this, response, createTemplateDataAsJsonString());
+        final CharSequence dataUrl = newTemplateDataUrl();
+
+        if (dataUrl != null) {
+            response.render(OnDomReadyHeaderItem.forScript(createFetchScript(dataUrl)));
+        } else if (isPrerendered()) {
+            if (isIncremental()) {
+                // the content is already rendered, the client only keeps the template data for later patches
+                renderedTemplateData = prerenderedTemplateData();
+                response.render(OnDomReadyHeaderItem.forScript("WicketMustache.hydrate('" + getMarkupId() + "', " + renderedTemplateData + ");"));
+            }
+        } else if (isIncremental() || getRequestCycle().find(AjaxRequestTarget.class) != null) {
+            response.render(OnDomReadyHeaderItem.forScript(createRenderScript()));
+        } else if (isTemplateDataAsJsonStringOverridden()) {
+            // the json of a subclass is used on all paths, so the first render shows the same data as later updates
+            final CharSequence json = createTemplateDataAsJsonString();
+
+            response.render(isPrecompiled()
+                            ? MustacheRenderHeaderItem.forRenderFunctionJson(this, createTemplateScript(), json)
+                            : MustacheRenderHeaderItem.forComponentJson(this, createTemplateScript(), json));
+        } else if (isPrecompiled()) {
+            response.render(MustacheRenderHeaderItem.forRenderFunction(this, createTemplateScript(), createTemplateData()));
+        } else {
+            response.render(MustacheRenderHeaderItem.forComponent(this, createTemplateScript(), createTemplateData()));
+        }
+    }
+
+    /**
+     * creates a javascript that renders the template with current template data. The template data is kept
+     * if this panel is incremental.
+     *
+     * @return new javascript
+     */
+    protected CharSequence createRenderScript() {
+        final CharSequence json = createTemplateDataAsJsonString();
+
+        if (isIncremental()) {
+            renderedTemplateData = json.toString();
+
+            return "WicketMustache.render('" + getMarkupId() + "', " + createTemplateScript() + ", " + json + ")";
+        }
+
+        return createRenderScript(json);
+    }
+
+    /**
+     * creates a javascript that renders the template with given content, either by its precompiled render
+     * function or by mustache.js.
+     *
+     * @param content The content to render
+     * @return new javascript
+     */
+    private CharSequence createRenderScript(final CharSequence content) {
+        if (isPrecompiled()) {
+            return WicketMustache.createRenderFunctionScript(this, createTemplateScript(), content);
+        }
+
+        return WicketMustache.createRenderScript(this, createTemplateScript(), content);
+    }
+
+    /**
+     * @return true, if the template is served as precompiled render function
+     */
+    private boolean isPrecompiled() {
+        return newTemplateReference() instanceof MustacheRendererReference;
+    }
+
+    /**
+     * Whether this panel can be updated incrementally by {@link #update(AjaxRequestTarget)}. An incremental panel
+     * keeps the template data that was sent to the client, so it should only be used for small to medium sized
+     * template data which changes partially.
+     *
+     * @return true if this panel is incremental
+     */
+    protected boolean isIncremental() {
+        return false;
+    }
+
+    /**
+     * updates the panel on client side. An incremental panel sends a json patch (RFC 6902) against the template
+     * data that was sent before, if it's smaller than the whole template data; the client applies it and renders
+     * the template again. If the client has no template data to patch, e.g. because the browser restored the
+     * page from its cache, it requests the panel again. Other panels are added to given target.
+     *
+     * @param target The current ajax request target
+     */
+    public void update(final AjaxRequestTarget target) {
+        if (!isIncremental() || renderedTemplateData == null || renderAgainBehavior == null) {
+            target.add(this);
+            return;
+        }
+
+        final String json = createTemplateDataAsJsonString().toString();
+        final ArrayNode patch = JsonPatch.diff(Json.parse(renderedTemplateData), Json.parse(json));
+
+        renderedTemplateData = json;
+
+        if (patch.size() == 0) {
+            return;
+        }
+
+        final String patchJson = Json.stringify(patch);
+        if (patchJson.length() < json.length()) {
+            target.appendJavaScript("WicketMustache.patch('" + getMarkupId() + "', " + createTemplateScript() + ", " + patchJson
+                                    + ", '" + renderAgainBehavior.getCallbackUrl() + "');");
+        } else {
+            target.appendJavaScript("WicketMustache.render('" + getMarkupId() + "', " + createTemplateScript() + ", " + json + ");");
+        }
+    }
+
+    /**
+     * Returns the url of a {@link de.agilecoders.wicket.mustache.request.resource.TemplateDataResource} that
+     * serves the template data. If an url is given, the template data is fetched on client side and
+     * {@link #createTemplateData()} is never called.
+     *
+     * @return the url of the template data or null to write the template data into the page
+     */
+    protected CharSequence newTemplateDataUrl() {
+        return null;
+    }
+
+    /**
+     * creates a javascript that fetches the template data from given url and renders the template with it.
+     *
+     * @param dataUrl the url of the template data
+     * @return new javascript
+     */
+    protected final CharSequence createFetchScript(final CharSequence dataUrl) {
+        return "$.getJSON('" + JavaScriptUtils.escapeQuotes(dataUrl) + "', function(data) { " +
+               createRenderScript("data") + "; });";
+    }
+
+    /**
+     * @return javascript expression that returns the template source, or the render function if the template
+     *         is precompiled
+     */
+    protected CharSequence createTemplateScript() {
+        final MustacheTemplateReference reference = newTemplateReference();
+
+        return reference != null ? reference.getTemplateScript() : WicketMustache.createTemplateScript(this);
     }
 
     /**
      * @return template data
      */
+    protected Object createTemplateData() {
+        return getModelObject();
+    }
+
+    /**
+     * Returns the template data as json string, which is used on all render paths. The template data of the
+     * first non-ajax render is streamed into the header response instead, unless this method is overridden.
+     *
+     * @return template data as json string
+     */
     protected CharSequence createTemplateDataAsJsonString() {
-        return Json.stringify(getModelObject());
+        return WicketMustache.toJson(createTemplateData(), getClass());
+    }
+
+    /**
+     * @return true, if {@link #createTemplateDataAsJsonString()} is overridden by the class of this panel
+     */
+    private boolean isTemplateDataAsJsonStringOverridden() {
+        return JSON_OVERRIDDEN.getUnchecked(getClass());
     }
 
     /**
@@ -92,9 +380,33 @@ public abstract class ClientSideMustachePanel extends GenericPanel<Object> imple
     protected abstract IResourceStream newTemplateResourceStream();
 
     /**
-     * Gets a new reader for the mustache template.
+     * Returns a reference to the template resource. If a reference is given, the template is served once as
+     * cacheable javascript resource and isn't written into the markup of each panel. In this case
+     * {@link #newTemplateResourceStream()} is never called. A {@link MustacheRendererReference} serves the
+     * template as precompiled render function instead of its source, so the client neither loads mustache.js
+     * nor parses the template.
      *
-     * @return reader for the mustache template
+     * @return the template reference or null to write the template into the markup
+     */
+    protected MustacheTemplateReference newTemplateReference() {
+        return null;
+    }
+
+    /**
+     * Returns the key that identifies the template resource. If a key is given, the template source is
+     * shared with all other components that use the same key and is read again only if the resource
+     * was modified. The template source of a panel without key is read once per panel instance.
+     *
+     * @return the template key or null
+     */
+    protected TemplateKey newTemplateKey() {
+        return null;
+    }
+
+    /**
+     * Gets the source of the mustache template.
+     *
+     * @return source of the mustache template
      */
     protected final String newTemplate() {
         if (templateData == null) {
@@ -103,6 +415,11 @@ public abstract class ClientSideMustachePanel extends GenericPanel<Object> imple
                 throw new IllegalArgumentException("newTemplateResourceStream must return a resource");
             }
 
+            final TemplateKey key = newTemplateKey();
+            if (key != null) {
+                return WicketMustache.sourceCache().get(key, resource).getContent();
+            }
+
             templateData = ResourceUtil.readString(resource);
             if (templateData == null) {
                 throw new IllegalArgumentException("can't find template content on given resource.");
@@ -112,6 +429,47 @@ public abstract class ClientSideMustachePanel extends GenericPanel<Object> imple
         return templateData;
     }
 
+    /**
+     * @return the template source that is used to pre-render this panel
+     */
+    private TemplateSource newTemplateSource() {
+        final MustacheTemplateReference reference = newTemplateReference();
+
+        if (reference != null) {
+            final TemplateKey key = TemplateKey.of(reference.getScope(), reference.getTemplateName(), reference.getLocale(),
+                                                   reference.getStyle(), reference.getVariation());
+
+            return WicketMustache.sourceCache().get(key, new PackageResourceStream(reference.getScope(), reference.getTemplateName(),
+                    reference.getLocale(), reference.getStyle(), reference.getVariation()));
+        }
+
+        final TemplateKey key = newTemplateKey();
+        if (key != null) {
+            return WicketMustache.sourceCache().get(key, newTemplateResourceStream());
+        }
+
+        return TemplateSource.of(newTemplate());
+    }
+
+    @Override
+    protected void onDetach() {
+        prerenderedTemplateData = null;
+
+        super.onDetach();
+    }
+
+    /**
+     * adds the panel to the ajax request target, so it's rendered with the whole template data again.
+     */
+    private static final class RenderAgainBehavior extends AbstractDefaultAjaxBehavior {
+        private static final long serialVersionUID = 14121982L;
+
+        @Override
+        protected void respond(final AjaxRequestTarget target) {
+            target.add(getComponent());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -127,11 +485,4 @@ public abstract class ClientSideMustachePanel extends GenericPanel<Object> imple
     protected CharSequence newMarkup() {
         return "<wicket:panel></wicket:panel>";
     }
-
-    @Override
-    public void detachModels() {
-        super.detachModels();
-
-        templateData = null;
-    }
 }
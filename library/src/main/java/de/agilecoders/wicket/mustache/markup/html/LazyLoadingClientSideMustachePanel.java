@@ -1,21 +1,18 @@
 package de.agilecoders.wicket.mustache.markup.html;
 
-import de.agilecoders.wicket.mustache.WicketMustache;
-import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
-import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.util.time.Duration;
 
 /**
- * lazy loading version of {@link ClientSideMustachePanel}.
+ * lazy loading version of {@link ClientSideMustachePanel}. The template data of all lazy loading panels
+ * of a page with the same delay is loaded by a single ajax request, see {@link LazyLoadingCoordinator}.
  *
  * @author miha
  */
 public abstract class LazyLoadingClientSideMustachePanel extends ClientSideMustachePanel {
     private static final long serialVersionUID = 14121982L;
-    private final AbstractDefaultAjaxBehavior ajaxBehavior;
 
     /**
      * Construct.
@@ -34,13 +31,13 @@ public abstract class LazyLoadingClientSideMustachePanel extends ClientSideMusta
      */
     public LazyLoadingClientSideMustachePanel(String id, IModel<Object> model) {
         super(id, model);
+    }
+
+    @Override
+    protected void onInitialize() {
+        super.onInitialize();
 
-        add(ajaxBehavior = new AbstractDefaultAjaxBehavior() {
-            @Override
-            protected void respond(AjaxRequestTarget target) {
-                target.appendJavaScript(WicketMustache.createRenderScript(LazyLoadingClientSideMustachePanel.this, createTemplateDataAsJsonString()));
-            }
-        });
+        LazyLoadingCoordinator.of(getPage());
     }
 
     /**
@@ -59,7 +56,16 @@ public abstract class LazyLoadingClientSideMustachePanel extends ClientSideMusta
 
     @Override
     protected void appendRenderScript(final IHeaderResponse response) {
-        response.render(OnDomReadyHeaderItem.forScript("setTimeout(function(){" + ajaxBehavior.getCallbackScript() + " }, " + delay().getMilliseconds() + ");"));
+        final CharSequence dataUrl = newTemplateDataUrl();
+
+        if (dataUrl != null) {
+            // the data is loaded without ajax request, so there's nothing to batch
+            response.render(OnDomReadyHeaderItem.forScript("setTimeout(function(){" + createFetchScript(dataUrl) + "}, " +
+                                                           delay().getMilliseconds() + ");"));
+            return;
+        }
+
+        response.render(OnDomReadyHeaderItem.forScript(LazyLoadingCoordinator.of(getPage()).newLoadScript(this, delay())));
     }
 
     @Override
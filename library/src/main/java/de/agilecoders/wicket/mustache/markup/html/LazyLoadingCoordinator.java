@@ -0,0 +1,92 @@
+package de.agilecoders.wicket.mustache.markup.html;
+
+import org.apache.wicket.Page;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.attributes.CallbackParameter;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.visit.IVisit;
+import org.apache.wicket.util.visit.IVisitor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Page behavior that loads the template data of all {@link LazyLoadingClientSideMustachePanel}s of a page. All
+ * panels with the same delay are collected on client side and rendered by a single ajax request, which responds
+ * one script that renders all of them.
+ *
+ * @author miha
+ */
+public class LazyLoadingCoordinator extends AbstractDefaultAjaxBehavior {
+    private static final long serialVersionUID = 14121982L;
+
+    /**
+     * name of the request parameter that contains the comma separated markup ids of all panels to render
+     */
+    private static final String PARAMETER = "ids";
+
+    /**
+     * returns the coordinator of given page; a new coordinator is added if the page doesn't have one yet.
+     *
+     * @param page The page
+     * @return the coordinator of given page
+     */
+    public static LazyLoadingCoordinator of(final Page page) {
+        final List<LazyLoadingCoordinator> coordinators = page.getBehaviors(LazyLoadingCoordinator.class);
+
+        if (coordinators.isEmpty()) {
+            final LazyLoadingCoordinator coordinator = new LazyLoadingCoordinator();
+            page.add(coordinator);
+
+            return coordinator;
+        }
+
+        return coordinators.get(0);
+    }
+
+    /**
+     * creates a script that schedules the given panel for loading. All panels which are scheduled with the same
+     * delay before it expires are loaded together.
+     *
+     * @param panel The panel to load
+     * @param delay the delay
+     * @return new load script
+     */
+    public CharSequence newLoadScript(final LazyLoadingClientSideMustachePanel panel, final Duration delay) {
+        final long milliseconds = delay.getMilliseconds();
+
+        return "(function(q){var b=q['" + milliseconds + "']=q['" + milliseconds + "']||{ids:[]};" +
+               "b.ids.push('" + panel.getMarkupId() + "');" +
+               "b.callback=" + getCallbackFunction(CallbackParameter.explicit(PARAMETER)) + ";" +
+               "if(!b.timer){b.timer=setTimeout(function(){var ids=b.ids.join(',');b.ids=[];b.timer=null;b.callback(ids);}," +
+               milliseconds + ");}})(window.WicketMustacheLazy=window.WicketMustacheLazy||{});";
+    }
+
+    @Override
+    protected void respond(final AjaxRequestTarget target) {
+        final String ids = getComponent().getRequest().getRequestParameters().getParameterValue(PARAMETER).toString();
+        if (Strings.isEmpty(ids)) {
+            return;
+        }
+
+        final Set<String> markupIds = new HashSet<String>(Arrays.asList(Strings.split(ids, ',')));
+        final StringBuilder script = new StringBuilder();
+
+        ((Page) getComponent()).visitChildren(LazyLoadingClientSideMustachePanel.class, new IVisitor<LazyLoadingClientSideMustachePanel, Void>() {
+            @Override
+            public void component(final LazyLoadingClientSideMustachePanel panel, final IVisit<Void> visit) {
+                if (markupIds.contains(panel.getMarkupId()) && panel.isVisibleInHierarchy()) {
+                    script.append(panel.createRenderScript()).append(';');
+                }
+            }
+        });
+
+        if (script.length() > 0) {
+            target.appendJavaScript(script);
+        }
+    }
+}
@@ -1,6 +1,14 @@
 package de.agilecoders.wicket.mustache.markup.html;
 
+import com.github.mustachejava.Mustache;
+import de.agilecoders.wicket.mustache.AsyncModel;
+import de.agilecoders.wicket.mustache.OutputCache;
+import de.agilecoders.wicket.mustache.TemplateKey;
+import de.agilecoders.wicket.mustache.TemplateSource;
 import de.agilecoders.wicket.mustache.WicketMustache;
+import de.agilecoders.wicket.mustache.typed.TypedRenderer;
+import de.agilecoders.wicket.mustache.util.ResponseWriter;
+import org.apache.wicket.Component;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.WicketRuntimeException;
 import org.apache.wicket.markup.ComponentTag;
@@ -8,13 +16,15 @@ import org.apache.wicket.markup.IMarkupCacheKeyProvider;
 import org.apache.wicket.markup.IMarkupResourceStreamProvider;
 import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.html.panel.GenericPanel;
+import org.apache.wicket.markup.html.panel.IMarkupSourcingStrategy;
+import org.apache.wicket.markup.html.panel.PanelMarkupSourcingStrategy;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.resource.ResourceUtil;
 import org.apache.wicket.util.resource.IResourceStream;
 import org.apache.wicket.util.resource.StringResourceStream;
 
-import java.io.Reader;
-import java.io.StringReader;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Map;
 
 /**
@@ -28,7 +38,10 @@ import java.util.Map;
 public abstract class MustachePanel extends GenericPanel<Object> implements IMarkupResourceStreamProvider, IMarkupCacheKeyProvider {
     private static final long serialVersionUID = 14121982L;
 
+    private transient TemplateSource templateSource;
     private transient String evaluatedTemplate;
+    private transient String markupCacheKey;
+    private transient String outputCacheKey;
 
     /**
      * Construct.
@@ -53,11 +66,147 @@ public abstract class MustachePanel extends GenericPanel<Object> implements IMar
             throw new WicketRuntimeException("Components cannot be added if the generated markup should not be parsed.");
         }
 
-        if (evaluatedTemplate == null) {
-            getMarkupResourceStream(null, null);
+        if (getOutputCacheKey() != null) {
+            // write the cached output or evaluate the template and cache it
+            final OutputCache outputCache = WicketMustache.outputCache();
+            final Writer writer = new ResponseWriter(getResponse());
+
+            replaceComponentTagBody(markupStream, openTag, null);
+
+            try {
+                if (!outputCache.write(getOutputCacheKey(), writer)) {
+                    final String output = compileTemplate();
+
+                    if (output != null) {
+                        outputCache.put(getOutputCacheKey(), output);
+                        writer.write(output);
+                    }
+                }
+            } catch (IOException e) {
+                throw new WicketRuntimeException("can't write cached output of " + this, e);
+            }
+        } else if (isStreaming()) {
+            // skip the body and write the template directly into the response
+            replaceComponentTagBody(markupStream, openTag, null);
+
+            try {
+                final TypedRenderer<?> renderer = newTypedRenderer();
+
+                if (renderer != null) {
+                    WicketMustache.render(renderer, getModelObject(), new ResponseWriter(getResponse()), getEscapeModelStrings(),
+                                          getClass().getName());
+                } else {
+                    WicketMustache.render(newMustache(), getModelObject(), new ResponseWriter(getResponse()), getClass().getName());
+                }
+            } catch (RuntimeException e) {
+                onException(e);
+            }
+        } else {
+            replaceComponentTagBody(markupStream, openTag, compileTemplate());
         }
+    }
 
-        replaceComponentTagBody(markupStream, openTag, evaluatedTemplate);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected IMarkupSourcingStrategy newMarkupSourcingStrategy() {
+        return new PanelMarkupSourcingStrategy(false) {
+            @Override
+            public void onComponentTagBody(final Component component, final MarkupStream markupStream, final ComponentTag openTag) {
+                if (isRenderedDirectly()) {
+                    // the template is written directly into the response instead of the associated markup
+                    MustachePanel.this.onComponentTagBody(markupStream, openTag);
+                } else {
+                    super.onComponentTagBody(component, markupStream, openTag);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a key that identifies the model state, e.g. the id and version of the model object. If a key is
+     * returned, the evaluated template is cached as markup by wicket and all panels of the same class with the
+     * same template key, key, locale, style, variation and escape flag reuse the already parsed markup instead of
+     * evaluating the template again. The key is created on each render, so it must be cheap to create and change as
+     * soon as the output changes. The template source is part of the key if there's no template key or in
+     * development mode, so the template is still read on each render then. Wicket's markup cache isn't bounded, so
+     * only use this mode if the number of different keys is bounded too.
+     *
+     * @return the markup cache key or null to evaluate the template on each render. Default: null
+     */
+    protected String newMarkupCacheKey() {
+        return null;
+    }
+
+    /**
+     * Returns the version of the model object, e.g. a database row version or an etag. If a version is returned,
+     * the evaluated template is cached in {@link WicketMustache#outputCache()} and shared by all panels of the same
+     * class with the same template key, version, locale, style, variation and escape flag; so the version must
+     * change as soon as the output changes. The template is only read if the output isn't cached yet, panels of the
+     * same class without template key must return the same template resource therefore. The template source is
+     * part of the key in development mode only, so modified templates are rendered again. The cached output
+     * neither is parsed as markup, so it can't contain any wicket tags.
+     *
+     * @return the model version or null to evaluate the template on each render. Default: null
+     */
+    protected String getModelVersion() {
+        return null;
+    }
+
+    /**
+     * @return the key of the cached output of current request or null if output isn't cached
+     */
+    private String getOutputCacheKey() {
+        if (outputCacheKey == null && !isStreaming()) {
+            final String modelVersion = getModelVersion();
+
+            if (modelVersion != null) {
+                final StringBuilder key = new StringBuilder(getClass().getName())
+                        .append('_').append(newTemplateKey())
+                        .append('_').append(modelVersion)
+                        .append('_').append(getLocale())
+                        .append('_').append(getStyle())
+                        .append('_').append(getVariation())
+                        .append('_').append(getEscapeModelStrings());
+
+                if (getApplication().usesDevelopmentConfig()) {
+                    key.append('_').append(getTemplateSource().getIdentity().getHash());
+                }
+
+                outputCacheKey = key.toString();
+            }
+        }
+
+        return outputCacheKey;
+    }
+
+    /**
+     * Whether to write the evaluated template directly into the response. A streaming panel neither keeps the
+     * evaluated template in memory nor parses it as markup, so it can't contain any wicket tags.
+     *
+     * @return true, if streaming is enabled. Default: false
+     */
+    protected boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Whether the model is an {@link AsyncModel}. The template of an async panel is evaluated while the panel is
+     * rendered and not as soon as its markup is requested, so that the model is loaded concurrently with the
+     * models of all other panels of the page.
+     *
+     * @return true, if the model is loaded concurrently
+     */
+    private boolean isAsync() {
+        return getDefaultModel() instanceof AsyncModel;
+    }
+
+    /**
+     * @return true, if the template isn't evaluated as markup but written in {@link #onComponentTagBody}
+     */
+    private boolean isRenderedDirectly() {
+        return isStreaming() || getOutputCacheKey() != null || isAsync();
     }
 
     /**
@@ -72,24 +221,57 @@ public abstract class MustachePanel extends GenericPanel<Object> implements IMar
     /**
      * Evaluates the template and returns the result.
      *
-     * @param templateReader used to read the template
      * @return the result of evaluating the mustache template
      */
-    private String compileTemplate(final Reader templateReader) {
+    private String compileTemplate() {
         // evaluate and cache template data
         if (evaluatedTemplate == null) {
             try {
-                evaluatedTemplate = WicketMustache.compile(templateReader, getId(), getModelObject(), getEscapeModelStrings());
+                final TypedRenderer<?> renderer = newTypedRenderer();
+
+                evaluatedTemplate = renderer != null
+                                    ? WicketMustache.compile(renderer, getModelObject(), getEscapeModelStrings(), getClass().getName())
+                                    : WicketMustache.compile(newMustache(), getModelObject(), getClass().getName());
             } catch (RuntimeException e) {
                 onException(e);
             }
-
-            return null;
         }
 
         return evaluatedTemplate;
     }
 
+    /**
+     * @return the compiled template, which is shared by all templates with the same source. The whole output
+     *         will be escaped if {@link #getEscapeModelStrings()} is true.
+     */
+    private Mustache newMustache() {
+        return WicketMustache.mustache(getTemplateSource(), getEscapeModelStrings());
+    }
+
+    /**
+     * Returns the renderer that was generated at compile time for this panel class or its nearest super class
+     * annotated with {@link de.agilecoders.wicket.mustache.typed.TypedTemplate}. A typed renderer reads all values
+     * synchronously and without reflection, so the render executor and timeout don't apply; renderings are still
+     * measured by the render listener. The template resource is still used to identify cached markup and, in
+     * development mode, cached output, so it must return the annotated template.
+     *
+     * @return the typed renderer or null to render the template resource
+     */
+    protected TypedRenderer<?> newTypedRenderer() {
+        return TypedRenderer.of(getClass());
+    }
+
+    /**
+     * Returns a key that identifies the template resource. If a key is returned, the template source is cached
+     * and only read again if the resource was modified. Returns null by default, which means that the template
+     * resource is read on each render. The compiled template is cached by content in both cases.
+     *
+     * @return the template key or null
+     */
+    protected TemplateKey newTemplateKey() {
+        return null;
+    }
+
     /**
      * Returns the template resource passed to the constructor.
      *
@@ -98,22 +280,37 @@ public abstract class MustachePanel extends GenericPanel<Object> implements IMar
     protected abstract IResourceStream newTemplateResourceStream();
 
     /**
-     * Gets a new reader for the mustache template.
-     *
-     * @return reader for the mustache template
+     * @return the source of the mustache template, which is loaded once per request
+     */
+    private TemplateSource getTemplateSource() {
+        if (templateSource == null) {
+            final TemplateKey templateKey = newTemplateKey();
+
+            if (templateKey != null) {
+                templateSource = WicketMustache.sourceCache().get(templateKey, templateResourceStream());
+            } else {
+                final String template = ResourceUtil.readString(templateResourceStream());
+                if (template == null) {
+                    throw new WicketRuntimeException("could not find mustache template for panel: " + this);
+                }
+
+                templateSource = TemplateSource.of(template);
+            }
+        }
+
+        return templateSource;
+    }
+
+    /**
+     * @return the template resource
      */
-    private Reader newTemplateReader() {
+    private IResourceStream templateResourceStream() {
         final IResourceStream resource = newTemplateResourceStream();
         if (resource == null) {
             throw new IllegalArgumentException("newTemplateResourceStream must return a resource");
         }
 
-        final String template = ResourceUtil.readString(resource);
-        if (template != null) {
-            return new StringReader(template);
-        }
-
-        return null;
+        return resource;
     }
 
     /**
@@ -121,13 +318,13 @@ public abstract class MustachePanel extends GenericPanel<Object> implements IMar
      */
     @Override
     public final IResourceStream getMarkupResourceStream(final MarkupContainer container, final Class<?> containerClass) {
-        final Reader reader = newTemplateReader();
-        if (reader == null) {
-            throw new WicketRuntimeException("could not find mustache template for panel: " + this);
+        if (isRenderedDirectly()) {
+            // the template will be rendered in onComponentTagBody
+            return new StringResourceStream("<wicket:panel></wicket:panel>");
         }
 
         // evaluate the template and return a new StringResourceStream
-        return new StringResourceStream("<wicket:panel>" + compileTemplate(reader) + "</wicket:panel>");
+        return new StringResourceStream("<wicket:panel>" + compileTemplate() + "</wicket:panel>");
     }
 
     /**
@@ -135,8 +332,52 @@ public abstract class MustachePanel extends GenericPanel<Object> implements IMar
      */
     @Override
     public final String getCacheKey(final MarkupContainer container, final Class<?> containerClass) {
-        // don't cache the evaluated template
-        return null;
+        if (isStreaming()) {
+            // markup of a streaming panel is always empty
+            return containerClass.getName() + "_streaming";
+        }
+
+        if (getOutputCacheKey() != null) {
+            // markup of a panel with cached output is always empty
+            return containerClass.getName() + "_output";
+        }
+
+        if (isAsync()) {
+            // markup of an async panel is always empty
+            return containerClass.getName() + "_async";
+        }
+
+        // only cache the evaluated template if it's allowed
+        return getMarkupCacheKey();
+    }
+
+    /**
+     * @return the markup cache key of the current request or null if markup can't be cached
+     */
+    private String getMarkupCacheKey() {
+        if (markupCacheKey == null && !isRenderedDirectly()) {
+            final String key = newMarkupCacheKey();
+
+            if (key != null) {
+                final TemplateKey templateKey = newTemplateKey();
+                final StringBuilder cacheKey = new StringBuilder(getClass().getName())
+                        .append('_').append(templateKey)
+                        .append('_').append(key)
+                        .append('_').append(getLocale())
+                        .append('_').append(getStyle())
+                        .append('_').append(getVariation())
+                        .append('_').append(getEscapeModelStrings());
+
+                if (templateKey == null || getApplication().usesDevelopmentConfig()) {
+                    // panels of the same class can render different templates without key, e.g. anonymous panels
+                    cacheKey.append('_').append(getTemplateSource().getIdentity().getHash());
+                }
+
+                markupCacheKey = cacheKey.toString();
+            }
+        }
+
+        return markupCacheKey;
     }
 
     /**
@@ -147,6 +388,9 @@ public abstract class MustachePanel extends GenericPanel<Object> implements IMar
         super.onDetach();
 
         // clear cached template data
+        templateSource = null;
         evaluatedTemplate = null;
+        markupCacheKey = null;
+        outputCacheKey = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.util.lang.Args;
+
+import java.util.Locale;
+
+/**
+ * Reference to a mustache template that is served as precompiled javascript render function by
+ * {@link MustacheRendererResource}. The render function is registered in the global
+ * <code>WicketMustacheRenderers</code> object; the client neither needs mustache.js nor the template source to
+ * render the template.
+ *
+ * @author miha
+ */
+public class MustacheRendererReference extends MustacheTemplateReference {
+    private static final long serialVersionUID = 14121982L;
+
+    /**
+     * name of the global javascript object that holds all render functions by template id
+     */
+    public static final String RENDERERS = "WicketMustacheRenderers";
+
+    /**
+     * suffix of the reference name, which distinguishes it from a {@link MustacheTemplateReference} to the same
+     * template
+     */
+    private static final String SUFFIX = ".js";
+
+    /**
+     * creates a reference to a template that is located next to given component. The locale, style and
+     * variation of the component are used to find the template.
+     *
+     * @param component The reference component
+     * @param name      The template name
+     * @return new renderer reference
+     */
+    public static MustacheRendererReference forComponent(final Component component, final String name) {
+        Args.notNull(component, "component");
+
+        return new MustacheRendererReference(component.getClass(), name, component.getLocale(), component.getStyle(),
+                                             component.getVariation());
+    }
+
+    /**
+     * Construct.
+     *
+     * @param scope The scope class of the template
+     * @param name  The template name
+     */
+    public MustacheRendererReference(final Class<?> scope, final String name) {
+        this(scope, name, null, null, null);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param scope     The scope class of the template
+     * @param name      The template name
+     * @param locale    The locale or null
+     * @param style     The style or null
+     * @param variation The variation or null
+     */
+    public MustacheRendererReference(final Class<?> scope, final String name, final Locale locale, final String style,
+                                     final String variation) {
+        super(scope, name + SUFFIX, locale, style, variation);
+    }
+
+    @Override
+    public String getTemplateName() {
+        return getName().substring(0, getName().length() - SUFFIX.length());
+    }
+
+    /**
+     * @return a javascript expression that returns the render function of the template
+     */
+    @Override
+    public String getTemplateScript() {
+        return RENDERERS + "[\"" + getTemplateId() + "\"]";
+    }
+
+    @Override
+    public IResource getResource() {
+        return new MustacheRendererResource(getScope(), getTemplateName(), getLocale(), getStyle(), getVariation(), getTemplateId());
+    }
+}
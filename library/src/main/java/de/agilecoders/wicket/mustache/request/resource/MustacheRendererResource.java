@@ -0,0 +1,41 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import de.agilecoders.wicket.mustache.TemplateSource;
+import de.agilecoders.wicket.mustache.WicketMustache;
+import de.agilecoders.wicket.mustache.util.Json;
+
+import java.util.Locale;
+
+/**
+ * A package resource that serves a mustache template as javascript render function, which is registered with
+ * its template id. The render function is compiled once per template source by the
+ * {@link de.agilecoders.wicket.mustache.RenderFunctionCompiler} of the application.
+ *
+ * @author miha
+ */
+public class MustacheRendererResource extends MustacheTemplateResource {
+    private static final long serialVersionUID = 14121982L;
+
+    /**
+     * Construct.
+     *
+     * @param scope      The scope class of the template
+     * @param name       The template name
+     * @param locale     The locale or null
+     * @param style      The style or null
+     * @param variation  The variation or null
+     * @param templateId The id the render function is registered with
+     */
+    public MustacheRendererResource(final Class<?> scope, final String name, final Locale locale, final String style,
+                                    final String variation, final String templateId) {
+        super(scope, name, locale, style, variation, templateId);
+    }
+
+    @Override
+    protected String newScript(final String source) {
+        final String renderFunction = WicketMustache.renderFunctionCompiler().compile(TemplateSource.of(source), getTemplateId());
+
+        return "(window." + MustacheRendererReference.RENDERERS + " = window." + MustacheRendererReference.RENDERERS
+               + " || {})[" + Json.stringify(getTemplateId()) + "] = " + renderFunction + ";";
+    }
+}
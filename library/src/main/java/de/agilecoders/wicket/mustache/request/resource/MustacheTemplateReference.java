@@ -0,0 +1,90 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.request.resource.IResource;
+import org.apache.wicket.request.resource.ResourceReference;
+import org.apache.wicket.util.lang.Args;
+import org.apache.wicket.util.lang.Packages;
+
+import java.util.Locale;
+
+/**
+ * Reference to a mustache template that is served as javascript by {@link MustacheTemplateResource}. The
+ * template source is registered in the global <code>WicketMustacheTemplates</code> object, so each template
+ * is transferred once and can be used by all components that reference it by its template id.
+ *
+ * @author miha
+ */
+public class MustacheTemplateReference extends ResourceReference {
+    private static final long serialVersionUID = 14121982L;
+
+    /**
+     * name of the global javascript object that holds all template sources by template id
+     */
+    public static final String TEMPLATES = "WicketMustacheTemplates";
+
+    /**
+     * creates a reference to a template that is located next to given component. The locale, style and
+     * variation of the component are used to find the template.
+     *
+     * @param component The reference component
+     * @param name      The template name
+     * @return new template reference
+     */
+    public static MustacheTemplateReference forComponent(final Component component, final String name) {
+        Args.notNull(component, "component");
+
+        return new MustacheTemplateReference(component.getClass(), name, component.getLocale(), component.getStyle(),
+                                             component.getVariation());
+    }
+
+    /**
+     * Construct.
+     *
+     * @param scope The scope class of the template
+     * @param name  The template name
+     */
+    public MustacheTemplateReference(final Class<?> scope, final String name) {
+        this(scope, name, null, null, null);
+    }
+
+    /**
+     * Construct.
+     *
+     * @param scope     The scope class of the template
+     * @param name      The template name
+     * @param locale    The locale or null
+     * @param style     The style or null
+     * @param variation The variation or null
+     */
+    public MustacheTemplateReference(final Class<?> scope, final String name, final Locale locale, final String style,
+                                     final String variation) {
+        super(scope, name, locale, style, variation);
+    }
+
+    /**
+     * @return the name of the template resource
+     */
+    public String getTemplateName() {
+        return getName();
+    }
+
+    /**
+     * @return the id the template source is registered with, which is the classpath path of the template
+     */
+    public String getTemplateId() {
+        return Packages.absolutePath(getScope(), getTemplateName());
+    }
+
+    /**
+     * @return a javascript expression that returns the template source
+     */
+    public String getTemplateScript() {
+        return TEMPLATES + "[\"" + getTemplateId() + "\"]";
+    }
+
+    @Override
+    public IResource getResource() {
+        return new MustacheTemplateResource(getScope(), getTemplateName(), getLocale(), getStyle(), getVariation(), getTemplateId());
+    }
+}
@@ -0,0 +1,92 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import de.agilecoders.wicket.mustache.TemplatePreloader;
+import de.agilecoders.wicket.mustache.util.Json;
+import org.apache.wicket.request.resource.PackageResource;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamWrapper;
+
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * A package resource that serves a mustache template as javascript, which registers the template source
+ * with its template id. The resource is static, so it can be cached by the browser and is versioned by
+ * the application's caching strategy.
+ *
+ * @author miha
+ */
+public class MustacheTemplateResource extends PackageResource {
+    private static final long serialVersionUID = 14121982L;
+
+    private static final String CHARSET = "UTF-8";
+
+    private final String templateId;
+
+    /**
+     * Construct.
+     *
+     * @param scope      The scope class of the template
+     * @param name       The template name
+     * @param locale     The locale or null
+     * @param style      The style or null
+     * @param variation  The variation or null
+     * @param templateId The id the template source is registered with
+     */
+    public MustacheTemplateResource(final Class<?> scope, final String name, final Locale locale, final String style,
+                                    final String variation, final String templateId) {
+        super(scope, name, locale, style, variation);
+
+        this.templateId = templateId;
+
+        setTextEncoding(CHARSET);
+    }
+
+    @Override
+    public IResourceStream getResourceStream() {
+        final IResourceStream resourceStream = super.getResourceStream();
+
+        if (resourceStream == null) {
+            return null;
+        }
+
+        return new ResourceStreamWrapper(resourceStream) {
+            @Override
+            public String getContentType() {
+                return "text/javascript";
+            }
+        };
+    }
+
+    @Override
+    protected byte[] processResponse(final Attributes attributes, final byte[] original) {
+        // templates are utf-8 encoded, like the partials that are read by mustache.java
+        final String source = new String(super.processResponse(attributes, original), Charset.forName(CHARSET));
+
+        return newScript(source).getBytes(Charset.forName(CHARSET));
+    }
+
+    /**
+     * creates the javascript that is served instead of the template.
+     *
+     * @param source The template source
+     * @return javascript that registers the template source with its template id
+     */
+    protected String newScript(final String source) {
+        return "(window." + MustacheTemplateReference.TEMPLATES + " = window." + MustacheTemplateReference.TEMPLATES
+               + " || {})[" + Json.stringify(templateId) + "] = " + Json.stringify(source) + ";";
+    }
+
+    /**
+     * @return the id the template is registered with
+     */
+    protected final String getTemplateId() {
+        return templateId;
+    }
+
+    @Override
+    protected boolean accept(final String path) {
+        // mustache templates are blocked by the default package resource guard
+        return path.endsWith(TemplatePreloader.EXTENSION) || super.accept(path);
+    }
+}
@@ -0,0 +1,167 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import com.google.common.hash.Hashing;
+import de.agilecoders.wicket.mustache.WicketMustache;
+import de.agilecoders.wicket.mustache.util.ResponseWriter;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.string.Strings;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
+
+/**
+ * A stateless resource that serves the template data of client side mustache panels as json, without
+ * touching the page store. Mount it with {@link org.apache.wicket.protocol.http.WebApplication#mountResource}
+ * and pass its url to {@link de.agilecoders.wicket.mustache.markup.html.ClientSideMustachePanel#newTemplateDataUrl()}.
+ * <p/>
+ * Each response contains an <code>ETag</code> and, if known, a <code>Last-Modified</code> header, so that
+ * browsers and proxies can revalidate cached data. If {@link #getVersion(Attributes)} or
+ * {@link #getLastModified(Attributes)} are implemented, a not modified response is sent without loading
+ * the data and the data is streamed into the response. Otherwise the etag is a hash of the serialized data.
+ *
+ * @author miha
+ */
+public abstract class TemplateDataResource extends AbstractResource {
+    private static final long serialVersionUID = 14121982L;
+
+    private static final String CONTENT_TYPE = "application/json";
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * loads the template data of current request.
+     *
+     * @param attributes the request attributes
+     * @return the template data
+     */
+    protected abstract Object getData(Attributes attributes);
+
+    /**
+     * returns the version of the template data, e.g. a database row version. The version must change
+     * as soon as the template data changes.
+     *
+     * @param attributes the request attributes
+     * @return the version of the template data or null if it isn't known
+     */
+    protected String getVersion(final Attributes attributes) {
+        return null;
+    }
+
+    /**
+     * returns the last modification time of the template data.
+     *
+     * @param attributes the request attributes
+     * @return the last modification time or null if it isn't known
+     */
+    protected Time getLastModified(final Attributes attributes) {
+        return null;
+    }
+
+    /**
+     * returns the time the template data can be used without revalidation. By default cached data
+     * must be revalidated on each request.
+     *
+     * @return the cache duration
+     */
+    protected Duration getCacheDuration() {
+        return Duration.NONE;
+    }
+
+    /**
+     * returns the caches that may store the template data. Use {@link WebResponse.CacheScope#PUBLIC} to let
+     * proxies and CDNs cache data which isn't session specific.
+     *
+     * @return the cache scope
+     */
+    protected WebResponse.CacheScope getCacheScope() {
+        return WebResponse.CacheScope.PRIVATE;
+    }
+
+    @Override
+    protected ResourceResponse newResourceResponse(final Attributes attributes) {
+        final Time lastModified = getLastModified(attributes);
+        final String version = getVersion(attributes);
+
+        if (version != null || lastModified != null) {
+            final String etag = version != null ? etag(version) : etag(String.valueOf(lastModified.getMilliseconds()));
+
+            return newResourceResponse(attributes, etag, lastModified, null);
+        }
+
+        final byte[] json = WicketMustache.toJsonBytes(getData(attributes), getClass());
+
+        return newResourceResponse(attributes, etag(Hashing.murmur3_128().hashBytes(json).toString()), null, json);
+    }
+
+    /**
+     * creates the response; the data is loaded and streamed into the response if no serialized data is given.
+     */
+    private ResourceResponse newResourceResponse(final Attributes attributes, final String etag, final Time lastModified,
+                                                 final byte[] json) {
+        final boolean modified = isModified((WebRequest) attributes.getRequest(), etag, lastModified);
+        final ResourceResponse response = new ResourceResponse() {
+            @Override
+            public boolean dataNeedsToBeWritten(final Attributes attributes) {
+                return modified;
+            }
+        };
+
+        response.setContentType(CONTENT_TYPE);
+        response.setTextEncoding(CHARSET);
+        response.setCacheDuration(getCacheDuration());
+        response.setCacheScope(getCacheScope());
+        response.setLastModified(lastModified);
+        response.getHeaders().setHeader("ETag", etag);
+
+        if (modified) {
+            response.setWriteCallback(new WriteCallback() {
+                @Override
+                public void writeData(final Attributes attributes) {
+                    if (json != null) {
+                        attributes.getResponse().write(json);
+                    } else {
+                        WicketMustache.writeJson(getData(attributes), new ResponseWriter(attributes.getResponse()), TemplateDataResource.this.getClass());
+                    }
+                }
+            });
+        }
+
+        return response;
+    }
+
+    @Override
+    protected void configureCache(final ResourceResponse data, final Attributes attributes) {
+        if (data.getCacheDuration().compareTo(Duration.NONE) > 0) {
+            super.configureCache(data, attributes);
+        } else if (attributes.getResponse() instanceof WebResponse) {
+            // the data may be stored, but must be revalidated on each request
+            final String scope = data.getCacheScope() == WebResponse.CacheScope.PUBLIC ? "public" : "private";
+            ((WebResponse) attributes.getResponse()).setHeader("Cache-Control", scope + ", no-cache");
+        }
+    }
+
+    /**
+     * @return false if the client already has the data with given etag or last modification time
+     */
+    private static boolean isModified(final WebRequest request, final String etag, final Time lastModified) {
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (!Strings.isEmpty(ifNoneMatch)) {
+            return !("*".equals(ifNoneMatch.trim()) || ifNoneMatch.contains(etag));
+        }
+
+        final Time ifModifiedSince = request.getIfModifiedSinceHeader();
+        if (ifModifiedSince != null && lastModified != null) {
+            // last modified headers have a precision of one second
+            return ifModifiedSince.before(Time.millis(lastModified.getMilliseconds() / 1000 * 1000));
+        }
+
+        return true;
+    }
+
+    /**
+     * @return given version as quoted etag
+     */
+    private static String etag(final String version) {
+        return "\"" + version + "\"";
+    }
+}
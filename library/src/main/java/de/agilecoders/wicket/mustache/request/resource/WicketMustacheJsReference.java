@@ -0,0 +1,48 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import org.apache.wicket.Application;
+import org.apache.wicket.markup.head.HeaderItem;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+
+import java.util.List;
+
+/**
+ * Static resource reference for the wicket-mustache javascript, which keeps the template data of client
+ * side panels and applies incremental updates.
+ *
+ * @author miha
+ */
+public class WicketMustacheJsReference extends JavaScriptResourceReference {
+    private static final long serialVersionUID = 14121982L;
+
+    /**
+     * instance holder of {@link WicketMustacheJsReference}
+     */
+    private static final class Holder {
+        private static final WicketMustacheJsReference instance = new WicketMustacheJsReference();
+    }
+
+    /**
+     * @return unique {@link WicketMustacheJsReference} instance
+     */
+    public static WicketMustacheJsReference instance() {
+        return Holder.instance;
+    }
+
+    /**
+     * Construct.
+     */
+    private WicketMustacheJsReference() {
+        super(WicketMustacheJsReference.class, "wicket-mustache.js");
+    }
+
+    @Override
+    public List<HeaderItem> getDependencies() {
+        final List<HeaderItem> dependencies = super.getDependencies();
+        dependencies.add(JavaScriptHeaderItem.forReference(Application.get().getJavaScriptLibrarySettings().getJQueryReference()));
+        dependencies.add(JavaScriptHeaderItem.forReference(MustacheJsReference.instance()));
+
+        return dependencies;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Keeps the template data of client side mustache panels, so that they can be updated by json patches
+ * (RFC 6902) instead of sending the whole template data again.
+ */
+;(function (window, $) {
+    "use strict";
+
+    var WicketMustache = window.WicketMustache = window.WicketMustache || {};
+
+    WicketMustache.data = WicketMustache.data || {};
+
+    /**
+     * renders the template into the element with given id and keeps the template data. The template is either
+     * the template source or a precompiled render function.
+     */
+    WicketMustache.render = function (id, template, data) {
+        WicketMustache.data[id] = data;
+        $("#" + id).html(typeof template === "function" ? template(data) : window.Mustache.render(template, data));
+    };
+
+    /**
+     * keeps the template data of an element whose content was already rendered on server side.
+     */
+    WicketMustache.hydrate = function (id, data) {
+        WicketMustache.data[id] = data;
+    };
+
+    /**
+     * applies the json patch to the kept template data and renders the template again. If there's no template
+     * data to patch, the element is requested again from given url.
+     *
+     * @return false if there's no template data to patch
+     */
+    WicketMustache.patch = function (id, template, patch, renderUrl) {
+        var data = WicketMustache.data[id], i;
+
+        if (data === undefined) {
+            if (renderUrl) {
+                window.Wicket.Ajax.get({u: renderUrl});
+            }
+            return false;
+        }
+
+        for (i = 0; i < patch.length; i++) {
+            data = apply(data, patch[i]);
+        }
+
+        WicketMustache.render(id, template, data);
+        return true;
+    };
+
+    function apply(data, operation) {
+        var tokens = operation.path.split("/").slice(1), parent = data, key, i;
+
+        if (tokens.length === 0) {
+            return operation.op === "remove" ? {} : operation.value;
+        }
+
+        for (i = 0; i < tokens.length - 1; i++) {
+            parent = parent[unescape(tokens[i])];
+        }
+
+        key = unescape(tokens[tokens.length - 1]);
+
+        if ($.isArray(parent)) {
+            key = key === "-" ? parent.length : parseInt(key, 10);
+
+            if (operation.op === "add") {
+                parent.splice(key, 0, operation.value);
+            } else if (operation.op === "remove") {
+                parent.splice(key, 1);
+            } else {
+                parent[key] = operation.value;
+            }
+        } else if (operation.op === "remove") {
+            delete parent[key];
+        } else {
+            parent[key] = operation.value;
+        }
+
+        return data;
+    }
+
+    function unescape(token) {
+        return token.replace(/~1/g, "/").replace(/~0/g, "~");
+    }
+})(window, jQuery);
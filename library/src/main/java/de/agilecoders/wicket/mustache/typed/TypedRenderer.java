@@ -0,0 +1,148 @@
+package de.agilecoders.wicket.mustache.typed;
+
+import de.agilecoders.wicket.mustache.util.Html;
+import org.apache.wicket.WicketRuntimeException;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Renders a template with a model of a known type. Implementations are generated at compile time for classes
+ * annotated with {@link TypedTemplate}; they read values with direct method calls and render values and sections
+ * the same way mustache.java does.
+ *
+ * @param <T> type of the template data
+ * @author miha
+ */
+public abstract class TypedRenderer<T> {
+
+    /**
+     * suffix of the generated renderer class name
+     */
+    public static final String SUFFIX = "_Renderer";
+
+    private static final ConcurrentMap<Class<?>, Object> renderers = new ConcurrentHashMap<Class<?>, Object>();
+    private static final Object NONE = new Object();
+
+    /**
+     * @return the type of the template data
+     */
+    public abstract Class<T> getModelType();
+
+    /**
+     * renders the template, values are escaped and triple mustaches are written as they are.
+     *
+     * @param model  The template data, may be null
+     * @param writer The writer to write the result to
+     * @throws IOException if the result can't be written
+     */
+    public abstract void render(T model, Writer writer) throws IOException;
+
+    /**
+     * renders the template with a model that is checked against the model type.
+     *
+     * @param model      The template data, may be null
+     * @param writer     The writer to write the result to
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     */
+    public final void renderObject(final Object model, final Writer writer, final boolean escapeHtml) {
+        if (model != null && !getModelType().isInstance(model)) {
+            throw new WicketRuntimeException("typed template expects a model of type " + getModelType().getName()
+                                             + " but got " + model.getClass().getName());
+        }
+
+        try {
+            render(getModelType().cast(model), escapeHtml ? Html.escaping(writer) : writer);
+        } catch (IOException e) {
+            throw new WicketRuntimeException("can't write typed template", e);
+        }
+    }
+
+    /**
+     * renders the template with a model that is checked against the model type.
+     *
+     * @param model      The template data, may be null
+     * @param escapeHtml whether to escape HTML characters of the whole output
+     * @return the rendered template
+     */
+    public final String renderObject(final Object model, final boolean escapeHtml) {
+        final StringWriter writer = new StringWriter();
+        renderObject(model, writer, escapeHtml);
+
+        return writer.toString();
+    }
+
+    /**
+     * writes a value like mustache does: null values are skipped, all others are written as string.
+     *
+     * @param value      The value
+     * @param writer     The writer to write the value to
+     * @param escapeHtml whether to escape HTML characters
+     * @throws IOException if the value can't be written
+     */
+    protected static void write(final Object value, final Writer writer, final boolean escapeHtml) throws IOException {
+        if (value != null) {
+            if (escapeHtml) {
+                Html.escape(value.toString(), writer);
+            } else {
+                writer.write(value.toString());
+            }
+        }
+    }
+
+    /**
+     * returns the generated renderer of given class or of its nearest super class that is annotated with
+     * {@link TypedTemplate}. The renderer is looked up once per class.
+     *
+     * @param type The (annotated) class
+     * @return the renderer or null if neither the class nor a super class is annotated
+     */
+    public static TypedRenderer<?> of(final Class<?> type) {
+        Object renderer = renderers.get(type);
+
+        if (renderer == null) {
+            renderer = find(type);
+            renderers.putIfAbsent(type, renderer);
+        }
+
+        return renderer != NONE ? (TypedRenderer<?>) renderer : null;
+    }
+
+    private static Object find(final Class<?> type) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            if (current.isAnnotationPresent(TypedTemplate.class)) {
+                final String name = nameOf(current);
+
+                try {
+                    return Class.forName(name, true, current.getClassLoader()).getDeclaredConstructor().newInstance();
+                } catch (ClassNotFoundException e) {
+                    throw new WicketRuntimeException("can't find typed renderer " + name + ", is wicket-mustache-processor "
+                                                     + "on the annotation processor path?", e);
+                } catch (NoSuchMethodException e) {
+                    throw new WicketRuntimeException("typed renderer " + name + " has no default constructor", e);
+                } catch (InstantiationException e) {
+                    throw new WicketRuntimeException("can't create typed renderer " + name, e);
+                } catch (IllegalAccessException e) {
+                    throw new WicketRuntimeException("can't access typed renderer " + name, e);
+                } catch (InvocationTargetException e) {
+                    throw new WicketRuntimeException("can't create typed renderer " + name, e.getCause());
+                }
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * @param type The annotated class
+     * @return the name of the renderer that is generated for given class, e.g. "de.agilecoders.HomePanel_Renderer"
+     */
+    public static String nameOf(final Class<?> type) {
+        // nested classes are flattened: Outer$Inner -> Outer_Inner_Renderer
+        return type.getName().replace('$', '_') + SUFFIX;
+    }
+}
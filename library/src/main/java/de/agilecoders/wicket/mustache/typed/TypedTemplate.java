@@ -0,0 +1,33 @@
+package de.agilecoders.wicket.mustache.typed;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a mustache template to a model type. The annotation processor of <code>wicket-mustache-processor</code>
+ * checks every value and section of the template against the model type at compile time and generates a
+ * {@link TypedRenderer}, which reads all values with direct method calls instead of reflection. A
+ * {@link de.agilecoders.wicket.mustache.markup.html.MustachePanel} with this annotation renders its model with
+ * the generated renderer.
+ *
+ * @author miha
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TypedTemplate {
+
+    /**
+     * @return the type of the template data
+     */
+    Class<?> model();
+
+    /**
+     * @return the template path relative to the package of the annotated class, or absolute if it starts with "/".
+     *         Default: "${SimpleClassName}.mustache"
+     */
+    String template() default "";
+}
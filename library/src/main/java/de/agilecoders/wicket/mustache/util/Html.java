@@ -0,0 +1,209 @@
+package de.agilecoders.wicket.mustache.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Helper functions to handle html values.
+ *
+ * @author miha
+ */
+public final class Html {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Html() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Writes given value to given writer and escapes all html characters on the fly. The same characters as
+     * {@link org.apache.wicket.util.string.Strings#escapeMarkup(CharSequence)} are escaped, but no
+     * intermediate buffer is used and values that don't need to be escaped are written as they are.
+     *
+     * @param value  The value to escape
+     * @param writer The writer to write to
+     * @throws IOException if value can't be written
+     */
+    public static void escape(final String value, final Writer writer) throws IOException {
+        escape(value, 0, value.length(), writer, false);
+    }
+
+    /**
+     * Writes given value to given writer and escapes all html characters twice, like a value that is escaped and
+     * then written into an escaped output, e.g. <code>&lt;</code> is written as <code>&amp;amp;lt;</code>. Both
+     * escapes are done on the fly in a single pass, values that don't need to be escaped are written as they are.
+     *
+     * @param value  The value to escape
+     * @param writer The writer to write to
+     * @throws IOException if value can't be written
+     */
+    public static void escapeTwice(final String value, final Writer writer) throws IOException {
+        escape(value, 0, value.length(), writer, true);
+    }
+
+    /**
+     * writes a range of given value and escapes all html characters once or twice.
+     *
+     * @param value  The value to escape
+     * @param offset The index of the first character to write
+     * @param end    The index after the last character to write
+     * @param writer The writer to write to
+     * @param twice  whether to escape twice
+     * @throws IOException if value can't be written
+     */
+    private static void escape(final String value, final int offset, final int end, final Writer writer, final boolean twice)
+            throws IOException {
+        int start = offset;
+
+        for (int i = offset; i < end; i++) {
+            final String replacement = twice ? doubleReplacement(value.charAt(i)) : replacement(value.charAt(i));
+
+            if (replacement != null) {
+                if (i > start) {
+                    writer.write(value, start, i - start);
+                }
+
+                writer.write(replacement);
+                start = i + 1;
+            }
+        }
+
+        if (start == 0 && end == value.length()) {
+            writer.write(value);
+        } else if (start < end) {
+            writer.write(value, start, end - start);
+        }
+    }
+
+    /**
+     * Escapes all html characters of given value.
+     *
+     * @param value The value to escape
+     * @return the escaped value
+     */
+    public static String escape(final String value) {
+        final StringWriter writer = new StringWriter(value.length() + 16);
+
+        try {
+            escape(value, writer);
+        } catch (IOException e) {
+            // a StringWriter doesn't throw
+            throw new IllegalStateException(e);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Wraps given writer, so that all html characters that are written to it are escaped.
+     *
+     * @param writer The writer to write the escaped characters to
+     * @return new escaping writer
+     */
+    public static Writer escaping(final Writer writer) {
+        return new EscapingWriter(writer);
+    }
+
+    /**
+     * @param c the character to escape
+     * @return the escaped character or null if it doesn't need to be escaped
+     */
+    private static String replacement(final char c) {
+        switch (c) {
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '&':
+                return "&amp;";
+            case '"':
+                return "&quot;";
+            case '\'':
+                return "&#039;";
+            default:
+                // non-printable characters except whitespace (TAB, LF, CR)
+                if (c < 32 && c != '\t' && c != '\n' && c != '\r') {
+                    return "&#" + (int) c + ";";
+                }
+
+                return null;
+        }
+    }
+
+    /**
+     * @param c the character to escape
+     * @return the twice escaped character or null if it doesn't need to be escaped
+     */
+    private static String doubleReplacement(final char c) {
+        switch (c) {
+            case '<':
+                return "&amp;lt;";
+            case '>':
+                return "&amp;gt;";
+            case '&':
+                return "&amp;amp;";
+            case '"':
+                return "&amp;quot;";
+            case '\'':
+                return "&amp;#039;";
+            default:
+                if (c < 32 && c != '\t' && c != '\n' && c != '\r') {
+                    return "&amp;#" + (int) c + ";";
+                }
+
+                return null;
+        }
+    }
+
+    /**
+     * A {@link Writer} that escapes all html characters before they're written to the wrapped writer.
+     */
+    private static final class EscapingWriter extends Writer {
+        private final Writer writer;
+
+        private EscapingWriter(final Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            final int end = offset + length;
+            int start = offset;
+
+            for (int i = offset; i < end; i++) {
+                final String replacement = replacement(buffer[i]);
+
+                if (replacement != null) {
+                    if (i > start) {
+                        writer.write(buffer, start, i - start);
+                    }
+
+                    writer.write(replacement);
+                    start = i + 1;
+                }
+            }
+
+            if (start < end) {
+                writer.write(buffer, start, end - start);
+            }
+        }
+
+        @Override
+        public void write(final String value, final int offset, final int length) throws IOException {
+            escape(value, offset, offset + length, writer, false);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
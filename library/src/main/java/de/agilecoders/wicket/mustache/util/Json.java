@@ -1,15 +1,19 @@
 package de.agilecoders.wicket.mustache.util;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.Version;
 import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.module.SimpleModule;
 import org.codehaus.jackson.node.ObjectNode;
 import org.codehaus.jackson.type.JavaType;
 
+import java.io.Writer;
+
 /**
  * Helper functions to handle JsonNode values.
  *
@@ -19,6 +23,11 @@ public final class Json {
 
     private static final SimpleModule MODULE = new SimpleModule("wicket-mustache", new Version(1, 0, 0, null));
 
+    /**
+     * shared mapper, it will be replaced as soon as a new serializer was added.
+     */
+    private static volatile Mapper mapper = new Mapper(createObjectMapper());
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -34,8 +43,18 @@ public final class Json {
      * @param serializer      Object that can be called to find serializer for types supported
      *                        by module (null returned for non-supported types)
      */
-    public static void addSerializer(final Class serializerClass, final JsonSerializer<?> serializer) {
+    public static synchronized void addSerializer(final Class serializerClass, final JsonSerializer<?> serializer) {
         MODULE.addSerializer(serializerClass, serializer);
+
+        // registered modules can't be changed, so a new mapper is needed
+        mapper = new Mapper(createObjectMapper());
+    }
+
+    /**
+     * @return the shared {@link ObjectMapper} instance
+     */
+    private static ObjectMapper objectMapper() {
+        return mapper.objectMapper;
     }
 
     /**
@@ -64,7 +83,7 @@ public final class Json {
         }
 
         try {
-            return createObjectMapper().valueToTree(data);
+            return objectMapper().valueToTree(data);
         } catch (Exception e) {
             throw new ParseException(e);
         }
@@ -81,7 +100,7 @@ public final class Json {
      */
     public static <T> T fromJson(final JsonNode json, final Class<T> clazz) {
         try {
-            return createObjectMapper().treeToValue(json, clazz);
+            return objectMapper().treeToValue(json, clazz);
         } catch (Exception e) {
             throw new ParseException(e);
         }
@@ -98,7 +117,7 @@ public final class Json {
      */
     public static <T> T fromJson(final String json, final JavaType type) {
         try {
-            return createObjectMapper().readValue(parse(json), type);
+            return objectMapper().readValue(parse(json), type);
         } catch (Exception e) {
             throw new ParseException(e);
         }
@@ -122,7 +141,7 @@ public final class Json {
      * @return a new empty json object.
      */
     public static ObjectNode newObject() {
-        return createObjectMapper().createObjectNode();
+        return objectMapper().createObjectNode();
     }
 
     /**
@@ -144,7 +163,53 @@ public final class Json {
      * @return stringified version of given json object
      */
     public static String stringify(final Object data) {
-        return stringify(toJson(data));
+        if (data == null) {
+            return "{}";
+        }
+
+        try {
+            return mapper.writer.writeValueAsString(data);
+        } catch (Exception e) {
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * Convert an object to its UTF-8 encoded json representation. If given value is null an
+     * empty json object will returned.
+     *
+     * @param data The data object to convert
+     * @return UTF-8 encoded json representation of given data object
+     */
+    public static byte[] toBytes(final Object data) {
+        if (data == null) {
+            return "{}".getBytes(Charsets.UTF_8);
+        }
+
+        try {
+            return mapper.writer.writeValueAsBytes(data);
+        } catch (Exception e) {
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * Writes the json representation of given data object to given writer, without creating an
+     * intermediate string. If given value is null an empty json object will be written.
+     *
+     * @param data   The data object to write
+     * @param writer The writer to write to
+     */
+    public static void write(final Object data, final Writer writer) {
+        try {
+            if (data == null) {
+                writer.write("{}");
+            } else {
+                mapper.writer.writeValue(writer, data);
+            }
+        } catch (Exception e) {
+            throw new ParseException(e);
+        }
     }
 
     /**
@@ -178,12 +243,31 @@ public final class Json {
         }
 
         try {
-            return createObjectMapper().readValue(jsonString, JsonNode.class);
+            return objectMapper().readValue(jsonString, JsonNode.class);
         } catch (Throwable e) {
             throw new ParseException(String.format("can't parse string [%s]", jsonString), e);
         }
     }
 
+    /**
+     * Holds a configured {@link ObjectMapper} and its {@link ObjectWriter}; both are thread-safe
+     * and will be shared by all calls.
+     */
+    private static final class Mapper {
+        private final ObjectMapper objectMapper;
+        private final ObjectWriter writer;
+
+        /**
+         * Construct.
+         *
+         * @param objectMapper The configured object mapper
+         */
+        private Mapper(final ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            this.writer = objectMapper.writer();
+        }
+    }
+
     /**
      * Json parser runtime exception.
      */
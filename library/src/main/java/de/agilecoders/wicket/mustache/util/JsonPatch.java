@@ -0,0 +1,99 @@
+package de.agilecoders.wicket.mustache.util;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+
+import java.util.Iterator;
+
+/**
+ * Creates json patches (RFC 6902) that transform one json value into another. Objects and arrays are
+ * compared element by element, so changing a single value of a large structure results in a single
+ * operation.
+ *
+ * @author miha
+ */
+public final class JsonPatch {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private JsonPatch() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * creates a json patch that transforms given source into given target.
+     *
+     * @param source The source value
+     * @param target The target value
+     * @return list of patch operations, which is empty if both values are equal
+     */
+    public static ArrayNode diff(final JsonNode source, final JsonNode target) {
+        final ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+
+        diff("", source, target, patch);
+
+        return patch;
+    }
+
+    private static void diff(final String path, final JsonNode source, final JsonNode target, final ArrayNode patch) {
+        if (source.equals(target)) {
+            return;
+        }
+
+        if (source.isObject() && target.isObject()) {
+            final Iterator<String> sourceNames = source.getFieldNames();
+            while (sourceNames.hasNext()) {
+                final String name = sourceNames.next();
+
+                if (!target.has(name)) {
+                    add(patch, "remove", path + "/" + escape(name), null);
+                }
+            }
+
+            final Iterator<String> targetNames = target.getFieldNames();
+            while (targetNames.hasNext()) {
+                final String name = targetNames.next();
+
+                if (source.has(name)) {
+                    diff(path + "/" + escape(name), source.get(name), target.get(name), patch);
+                } else {
+                    add(patch, "add", path + "/" + escape(name), target.get(name));
+                }
+            }
+        } else if (source.isArray() && target.isArray()) {
+            final int common = Math.min(source.size(), target.size());
+
+            for (int i = 0; i < common; i++) {
+                diff(path + "/" + i, source.get(i), target.get(i), patch);
+            }
+            for (int i = common; i < target.size(); i++) {
+                add(patch, "add", path + "/" + i, target.get(i));
+            }
+            for (int i = source.size() - 1; i >= common; i--) {
+                add(patch, "remove", path + "/" + i, null);
+            }
+        } else {
+            add(patch, "replace", path, target);
+        }
+    }
+
+    private static void add(final ArrayNode patch, final String op, final String path, final JsonNode value) {
+        final ObjectNode operation = patch.addObject();
+        operation.put("op", op);
+        operation.put("path", path);
+
+        if (value != null) {
+            operation.put("value", value);
+        }
+    }
+
+    /**
+     * escapes a field name as json pointer token.
+     */
+    private static String escape(final String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+}
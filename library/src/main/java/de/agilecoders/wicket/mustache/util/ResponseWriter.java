@@ -0,0 +1,68 @@
+package de.agilecoders.wicket.mustache.util;
+
+import org.apache.wicket.request.Response;
+import org.apache.wicket.util.lang.Args;
+
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * A {@link Writer} that writes all characters directly to a {@link Response}.
+ *
+ * @author miha
+ */
+public class ResponseWriter extends Writer {
+
+    private final Response response;
+
+    /**
+     * Construct.
+     *
+     * @param response The response to write to
+     */
+    public ResponseWriter(final Response response) {
+        super();
+
+        this.response = Args.notNull(response, "response");
+    }
+
+    @Override
+    public void write(final char[] buffer, final int offset, final int length) {
+        write(CharBuffer.wrap(buffer, offset, length));
+    }
+
+    @Override
+    public void write(final String value, final int offset, final int length) {
+        write(offset == 0 && length == value.length() ? value : value.subSequence(offset, offset + length));
+    }
+
+    @Override
+    public void write(final String value) {
+        write((CharSequence) value);
+    }
+
+    @Override
+    public Writer append(final CharSequence value) {
+        write(value != null ? value : "null");
+        return this;
+    }
+
+    /**
+     * writes given char sequence to the response.
+     *
+     * @param value the value to write
+     */
+    private void write(final CharSequence value) {
+        response.write(value);
+    }
+
+    @Override
+    public void flush() {
+        // nothing to do, response handles flushing
+    }
+
+    @Override
+    public void close() {
+        // never close the response
+    }
+}
@@ -0,0 +1,54 @@
+package de.agilecoders.wicket.mustache;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link AbortableWriter}.
+ *
+ * @author miha
+ */
+public class AbortableWriterTest {
+
+    @After
+    public void after() {
+        // clear the interrupted flag for following tests
+        Thread.interrupted();
+    }
+
+    @Test
+    public void discardsWritesAfterAbort() throws IOException {
+        final StringWriter target = new StringWriter();
+        final AbortableWriter writer = new AbortableWriter(target);
+
+        writer.write("before");
+        writer.abort(Thread.currentThread());
+        writer.write("after");
+
+        assertEquals("before", target.toString());
+        assertTrue(writer.complete());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void ignoresAbortAfterCompletion() throws IOException {
+        final StringWriter target = new StringWriter();
+        final AbortableWriter writer = new AbortableWriter(target);
+
+        writer.write("rendered");
+        assertFalse(writer.complete());
+
+        writer.abort(Thread.currentThread());
+
+        assertFalse(writer.isAborted());
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertEquals("rendered", target.toString());
+    }
+}
@@ -0,0 +1,94 @@
+package de.agilecoders.wicket.mustache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link CachedText}.
+ *
+ * @author miha
+ */
+public class CachedTextTest {
+
+    /**
+     * ascii, two and three byte characters and a surrogate pair
+     */
+    private static final String TEXT = "<p>ä € 😀</p>";
+
+    @Test
+    public void writesText() throws IOException {
+        assertEquals(TEXT, write(CachedText.of(TEXT, false)));
+        assertEquals(TEXT, write(CachedText.of(TEXT, true)));
+        assertEquals("", write(CachedText.of("", true)));
+    }
+
+    @Test
+    public void writesEncodedTextInChunks() throws IOException {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < 3 * CachedText.CHUNK_SIZE) {
+            builder.append(TEXT);
+        }
+        final String text = builder.toString();
+        final ChunkWriter writer = new ChunkWriter();
+
+        CachedText.of(text, true).writeTo(writer);
+
+        assertEquals(text, writer.toString());
+        assertTrue(writer.chunks >= 3);
+        assertTrue(writer.maximumChunk <= CachedText.CHUNK_SIZE);
+    }
+
+    @Test
+    public void returnsText() {
+        assertEquals(TEXT, CachedText.of(TEXT, false).toString());
+        assertEquals(TEXT, CachedText.of(TEXT, true).toString());
+    }
+
+    @Test
+    public void weighsStoredBytes() {
+        assertEquals(2 * TEXT.length(), CachedText.of(TEXT, false).weight());
+        assertEquals(TEXT.getBytes(com.google.common.base.Charsets.UTF_8).length, CachedText.of(TEXT, true).weight());
+    }
+
+    private static String write(final CachedText text) throws IOException {
+        final StringWriter writer = new StringWriter();
+        text.writeTo(writer);
+
+        return writer.toString();
+    }
+
+    /**
+     * collects all written characters and counts the written chunks.
+     */
+    private static final class ChunkWriter extends Writer {
+        private final StringBuilder builder = new StringBuilder();
+        private int chunks = 0;
+        private int maximumChunk = 0;
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            builder.append(buffer, offset, length);
+            chunks++;
+            maximumChunk = Math.max(maximumChunk, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.MustacheException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the <code>{{#cache}}</code> sections of {@link FragmentCacheCode}.
+ *
+ * @author miha
+ */
+public class FragmentCacheCodeTest {
+
+    private static final Pattern POSITION = Pattern.compile("\\{\\{#cache nav 60 @(\\w+)\\.(\\d+)\\}\\}");
+
+    private FragmentCache cache;
+
+    @Before
+    public void before() {
+        cache = new FragmentCache(1024);
+    }
+
+    @Test
+    public void completesEndTags() {
+        final String completed = FragmentCacheCode.completeEndTags("a{{#cache nav 60}}b{{/cache}}c", "{{", "}}");
+        final Matcher matcher = POSITION.matcher(completed);
+
+        assertTrue(completed, matcher.find());
+        assertEquals("a" + matcher.group() + "b{{/cache nav 60 @" + matcher.group(1) + ".0}}c", completed);
+    }
+
+    @Test
+    public void completesNestedEndTags() {
+        final String completed = FragmentCacheCode.completeEndTags(
+                "{{#cache outer}}{{#items}}{{#cache inner 5}}{{.}}{{/cache}}{{/items}}{{/cache}}", "{{", "}}");
+
+        assertTrue(completed, completed.matches("\\{\\{#cache outer @\\w+\\.0\\}\\}\\{\\{#items\\}\\}"
+                                                + "\\{\\{#cache inner 5 @\\w+\\.1\\}\\}\\{\\{\\.\\}\\}\\{\\{/cache inner 5 @\\w+\\.1\\}\\}"
+                                                + "\\{\\{/items\\}\\}\\{\\{/cache outer @\\w+\\.0\\}\\}"));
+    }
+
+    @Test
+    public void completesEndTagsWithCustomDelimiters() {
+        final String completed = FragmentCacheCode.completeEndTags("<% #cache nav %>b<% /cache %>", "<%", "%>");
+
+        assertTrue(completed, completed.matches("<%#cache nav @\\w+\\.0%>b<%/cache nav @\\w+\\.0%>"));
+    }
+
+    @Test
+    public void keepsTemplatesWithoutCacheSections() {
+        final String source = "{{#cached}}{{cache}}{{/cached}}{{#cache.items}}x{{/cache.items}}";
+
+        assertEquals(source, FragmentCacheCode.completeEndTags(source, "{{", "}}"));
+    }
+
+    @Test
+    public void completesEndTagsOnce() {
+        final String completed = FragmentCacheCode.completeEndTags("{{#cache nav 60}}b{{/cache}}", "{{", "}}");
+
+        assertEquals(completed, FragmentCacheCode.completeEndTags(completed, "{{", "}}"));
+    }
+
+    @Test
+    public void positionsDependOnTemplateSource() {
+        final String first = FragmentCacheCode.completeEndTags("{{#cache nav 60}}a{{/cache}}", "{{", "}}");
+        final String second = FragmentCacheCode.completeEndTags("{{#cache nav 60}}b{{/cache}}", "{{", "}}");
+
+        assertNotEquals(first.substring(0, first.indexOf('}')), second.substring(0, second.indexOf('}')));
+    }
+
+    @Test
+    public void rendersCachedSectionOnce() {
+        final String template = "<p>{{#cache nav}}{{value}}{{/cache}}</p>";
+
+        assertEquals("<p>first</p>", render(template, "first"));
+        assertEquals("<p>first</p>", render(template, "second"));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    public void cachesSameKeyOfDifferentTemplatesSeparately() {
+        assertEquals("<p>first</p>", render("<p>{{#cache nav}}{{value}}{{/cache}}</p>", "first"));
+        assertEquals("<div>second</div>", render("<div>{{#cache nav}}{{value}}{{/cache}}</div>", "second"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cachesSameKeyAtDifferentPositionsSeparately() {
+        assertEquals("first|<i>first</i>", render("{{#cache nav}}{{value}}{{/cache}}|{{#cache nav}}<i>{{value}}</i>{{/cache}}", "first"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cachesEscapeModesSeparately() {
+        final String template = "<p>{{#cache nav}}{{value}}{{/cache}}</p>";
+
+        assertEquals("<p>a&amp;b</p>", render(template, "a&b", false));
+        assertEquals("&lt;p&gt;a&amp;amp;b&lt;/p&gt;", render(template, "a&b", true));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void rendersSectionsLikeTheirContentWithoutCache() {
+        cache = null;
+
+        assertEquals("<p>first</p>", render("<p>{{#cache nav 60}}{{value}}{{/cache}}</p>", "first"));
+        assertEquals("<p>second</p>", render("<p>{{#cache nav 60}}{{value}}{{/cache}}</p>", "second"));
+    }
+
+    @Test(expected = MustacheException.class)
+    public void rejectsSectionsWithoutKey() {
+        render("{{#cache @position}}{{value}}{{/cache @position}}", "first");
+    }
+
+    @Test(expected = MustacheException.class)
+    public void rejectsInvalidTimeToLive() {
+        render("{{#cache nav soon}}{{value}}{{/cache}}", "first");
+    }
+
+    private String render(final String template, final String value) {
+        return render(template, value, false);
+    }
+
+    /**
+     * renders given template with a fresh factory and the fragment cache of this test.
+     */
+    private String render(final String template, final String value, final boolean escapeHtml) {
+        final WicketMustacheFactory factory = new WicketMustacheFactory(escapeHtml);
+        factory.setFragmentCache(cache);
+
+        final StringWriter writer = new StringWriter();
+        factory.compile(new StringReader(template), "template.mustache").execute(writer, Collections.singletonMap("value", value));
+
+        return writer.toString();
+    }
+}
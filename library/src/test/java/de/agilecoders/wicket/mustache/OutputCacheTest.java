@@ -0,0 +1,62 @@
+package de.agilecoders.wicket.mustache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link OutputCache} and {@link FragmentCache}.
+ *
+ * @author miha
+ */
+public class OutputCacheTest {
+
+    @Test
+    public void writesCachedOutput() throws IOException {
+        for (final boolean compact : new boolean[]{false, true}) {
+            final OutputCache cache = new OutputCache(1024, compact);
+            final StringWriter writer = new StringWriter();
+
+            assertFalse(cache.write("key", writer));
+            cache.put("key", "<p>ä</p>");
+            assertTrue(cache.write("key", writer));
+
+            assertEquals("<p>ä</p>", writer.toString());
+            assertEquals("<p>ä</p>", cache.get("key"));
+            assertEquals(2, cache.hitCount());
+            assertEquals(1, cache.missCount());
+        }
+    }
+
+    @Test
+    public void writesCachedFragments() throws IOException {
+        for (final boolean compact : new boolean[]{false, true}) {
+            final FragmentCache cache = new FragmentCache(1024, compact);
+            final StringWriter writer = new StringWriter();
+
+            assertFalse(cache.write("key", writer));
+            cache.put("key", "<li>€</li>", 0);
+            assertTrue(cache.write("key", writer));
+
+            assertEquals("<li>€</li>", writer.toString());
+        }
+    }
+
+    @Test
+    public void doesntWriteExpiredFragments() throws IOException, InterruptedException {
+        final FragmentCache cache = new FragmentCache(1024, true);
+
+        cache.put("key", "<li>x</li>", 1);
+        Thread.sleep(5);
+
+        assertFalse(cache.write("key", new StringWriter()));
+        assertNull(cache.get("key"));
+        assertEquals(1, cache.expiredCount());
+    }
+}
@@ -0,0 +1,136 @@
+package de.agilecoders.wicket.mustache;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Tests {@link RenderFunctionCompiler}: render functions are compiled once and must render like mustache.js does.
+ * The render functions are executed by the javascript engine of the jvm, these tests are skipped without one.
+ *
+ * @author miha
+ */
+public class RenderFunctionCompilerTest {
+
+    private static final String FUNCTIONS = "de.agilecoders.wicket.mustache.functions";
+
+    private RenderFunctionCompiler compiler;
+    private WicketTester tester;
+
+    @Before
+    public void before() {
+        compiler = new RenderFunctionCompiler();
+    }
+
+    @After
+    public void after() {
+        if (tester != null) {
+            tester.destroy();
+        }
+    }
+
+    @Test
+    public void compilesEachTemplateOnce() {
+        for (int i = 0; i < 1000; i++) {
+            compiler.compile(TemplateSource.of("<p>{{value}} " + i + "</p>"), "template.mustache");
+        }
+        compiler.compile(TemplateSource.of("<p>{{value}} 0</p>"), "template.mustache");
+
+        // render functions aren't evicted
+        assertEquals(1000, compiler.size());
+        assertEquals(1, compiler.hitCount());
+    }
+
+    @Test
+    public void preloadsRenderFunctions() {
+        final MustacheSettings settings = new MustacheSettings().addPreloadPackages(FUNCTIONS).setPreloadRenderFunctions(true);
+        final TemplatePreloader.Report report = preload(settings);
+        final RenderFunctionCompiler preloaded = settings.getRenderFunctionCompiler();
+
+        assertTrue(report.getFailures().toString(), report.getFailures().isEmpty());
+        assertEquals(3, preloaded.size());
+
+        // the function of a renderer resource is registered with the template path
+        preloaded.compile(TemplateSource.of("<li>{{name}}</li>"), "de/agilecoders/wicket/mustache/functions/item.mustache");
+        assertEquals(1, preloaded.hitCount());
+        assertEquals(3, preloaded.missCount());
+    }
+
+    @Test
+    public void preloadsRenderFunctionsIfEnabledOnly() {
+        final MustacheSettings settings = new MustacheSettings().addPreloadPackages(FUNCTIONS);
+
+        assertEquals(3, preload(settings).getTemplates());
+        assertEquals(0, settings.getRenderFunctionCompiler().size());
+    }
+
+    @Test
+    public void resolvesDottedNames() throws ScriptException {
+        assertEquals("<p>Tom Jerry</p>", render("<p>{{person.name}} {{#person}}{{friend.name}}{{/person}}</p>",
+                                               "{\"person\": {\"name\": \"Tom\"}, \"friend\": {\"name\": \"Jerry\"}}"));
+        assertEquals("<p></p>", render("<p>{{person.address.street}}</p>", "{\"person\": {\"name\": \"Tom\"}}"));
+        assertEquals("<p>Tom</p>", render("<p>{{#items}}{{person.name}}{{/items}}</p>",
+                                          "{\"person\": {\"name\": \"Tom\"}, \"items\": [{\"id\": 1}]}"));
+    }
+
+    @Test
+    public void rendersEmptyArraysAsFalsy() throws ScriptException {
+        assertEquals("<ul>empty</ul>", render("<ul>{{#items}}<li>{{.}}</li>{{/items}}{{^items}}empty{{/items}}</ul>",
+                                              "{\"items\": []}"));
+        assertEquals("<ul><li>a</li><li>b</li></ul>", render("<ul>{{#items}}<li>{{.}}</li>{{/items}}{{^items}}empty{{/items}}</ul>",
+                                                             "{\"items\": [\"a\", \"b\"]}"));
+    }
+
+    @Test
+    public void rendersZeroAndEmptyStringsAsFalsy() throws ScriptException {
+        final String template = "{{#value}}yes{{/value}}{{^value}}no{{/value}}:{{value}}";
+
+        assertEquals("no:0", render(template, "{\"value\": 0}"));
+        assertEquals("no:", render(template, "{\"value\": \"\"}"));
+        assertEquals("no:false", render(template, "{\"value\": false}"));
+        assertEquals("no:", render(template, "{\"value\": null}"));
+        assertEquals("yes:1", render(template, "{\"value\": 1}"));
+        assertEquals("yes:0.0", render(template, "{\"value\": \"0.0\"}"));
+    }
+
+    @Test
+    public void rendersRecursivePartials() throws ScriptException {
+        // leaves need an empty list, otherwise the children of their parent are found, like in mustache.js
+        assertEquals("<li>root<ul><li>a<ul><li>a1<ul></ul></li></ul></li><li>b<ul></ul></li></ul></li>",
+                     render("{{> de/agilecoders/wicket/mustache/functions/tree}}",
+                            "{\"name\": \"root\", \"children\": [{\"name\": \"a\", \"children\": [{\"name\": \"a1\", \"children\": []}]}, {\"name\": \"b\", \"children\": []}]}"));
+    }
+
+    @Test
+    public void escapesLikeMustacheJs() throws ScriptException {
+        assertEquals("&lt;a href=&quot;&#x2F;x&quot;&gt;Tom &amp; &#39;Jerry&#39;&lt;&#x2F;a&gt;|<a href=\"/x\">Tom & 'Jerry'</a>|<a href=\"/x\">Tom & 'Jerry'</a>",
+                     render("{{value}}|{{{value}}}|{{& value}}", "{\"value\": \"<a href=\\\"/x\\\">Tom & 'Jerry'</a>\"}"));
+        assertEquals("<p> </p>", render("<p> </p>", "{}"));
+    }
+
+    private TemplatePreloader.Report preload(final MustacheSettings settings) {
+        tester = new WicketTester(new MockApplication());
+
+        return new TemplatePreloader(tester.getApplication(), settings).preload();
+    }
+
+    /**
+     * compiles given template into a render function and executes it with given json data.
+     */
+    private String render(final String template, final String json) throws ScriptException {
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+        assumeNotNull(engine);
+
+        return String.valueOf(engine.eval(compiler.compile(TemplateSource.of(template), "template.mustache") + "(" + json + ")"));
+    }
+}
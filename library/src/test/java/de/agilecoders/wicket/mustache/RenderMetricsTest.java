@@ -0,0 +1,95 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.Mustache;
+import de.agilecoders.wicket.mustache.typed.TypedRenderer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that {@link RenderMetrics} counts renderings per rendering resource or class, including typed renderings.
+ *
+ * @author miha
+ */
+public class RenderMetricsTest {
+
+    private RenderMetrics metrics;
+
+    @Before
+    public void before() {
+        metrics = new RenderMetrics();
+        WicketMustache.settings().setRenderListener(metrics);
+    }
+
+    @After
+    public void after() {
+        WicketMustache.settings().setRenderListener(null);
+    }
+
+    @Test
+    public void countsTemplatesWithSameSourceSeparately() {
+        final String template = "<p>{{value}} of RenderMetricsTest</p>";
+
+        WicketMustache.compile(new StringReader(template), "first.mustache", Collections.singletonMap("value", "a"));
+        WicketMustache.compile(new StringReader(template), "second.mustache", Collections.singletonMap("value", "b"));
+        WicketMustache.compile(new StringReader(template), "second.mustache", Collections.singletonMap("value", "c"));
+
+        assertEquals(1, metrics.getRenderStatistics().get("first.mustache").getCount());
+        assertEquals(2, metrics.getRenderStatistics().get("second.mustache").getCount());
+        assertEquals(1, metrics.getCompileCount());
+    }
+
+    @Test
+    public void countsRenderingsByGivenName() {
+        final Mustache mustache = WicketMustache.mustache(TemplateSource.of("<p>{{value}} by name</p>"), false);
+
+        assertSame(mustache, WicketMustache.mustache(TemplateSource.of("<p>{{value}} by name</p>"), false));
+
+        WicketMustache.compile(mustache, Collections.singletonMap("value", "a"), "de.agilecoders.FirstPanel");
+        WicketMustache.compile(mustache, Collections.singletonMap("value", "b"), "de.agilecoders.SecondPanel");
+
+        assertEquals(1, metrics.getRenderStatistics().get("de.agilecoders.FirstPanel").getCount());
+        assertEquals(1, metrics.getRenderStatistics().get("de.agilecoders.SecondPanel").getCount());
+        assertEquals(2, metrics.getRenderCount());
+    }
+
+    @Test
+    public void usesCompiledNameWithoutGivenName() {
+        final Mustache mustache = WicketMustache.mustache(new StringReader("<p>{{value}} unnamed</p>"), "compiled.mustache", false);
+
+        WicketMustache.compile(mustache, Collections.singletonMap("value", "a"));
+
+        assertEquals(1, metrics.getRenderStatistics().get("compiled.mustache").getCount());
+        assertFalse(metrics.getRenderStatistics().containsKey("unnamed"));
+    }
+
+    @Test
+    public void countsTypedRenderings() {
+        final TypedRenderer<String> renderer = new TypedRenderer<String>() {
+            @Override
+            public Class<String> getModelType() {
+                return String.class;
+            }
+
+            @Override
+            public void render(final String model, final Writer writer) throws IOException {
+                writer.write("<p>" + model + "</p>");
+            }
+        };
+
+        assertEquals("<p>a</p>", WicketMustache.compile(renderer, "a", false, "de.agilecoders.TypedPanel"));
+        assertEquals("&lt;p&gt;b&lt;/p&gt;", WicketMustache.compile(renderer, "b", true, "de.agilecoders.TypedPanel"));
+
+        assertEquals(2, metrics.getRenderStatistics().get("de.agilecoders.TypedPanel").getCount());
+        assertEquals(0, metrics.getCompileCount());
+    }
+}
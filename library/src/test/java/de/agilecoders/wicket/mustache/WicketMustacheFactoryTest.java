@@ -0,0 +1,72 @@
+package de.agilecoders.wicket.mustache;
+
+import com.github.mustachejava.Mustache;
+import org.apache.wicket.util.string.Strings;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the escaping of {@link WicketMustacheFactory}.
+ *
+ * @author miha
+ */
+public class WicketMustacheFactoryTest {
+
+    private static final String VALUE = "<b>Tom & \"Jerry\"</b>";
+
+    @Test
+    public void escapesValues() {
+        assertEquals("<p>&lt;b&gt;Tom &amp; &quot;Jerry&quot;&lt;/b&gt;</p>", render(false, "<p>{{value}}</p>"));
+    }
+
+    @Test
+    public void writesTripleMustachesAsTheyAre() {
+        assertEquals("<p><b>Tom & \"Jerry\"</b></p>", render(false, "<p>{{{value}}}</p>"));
+        assertEquals("<p><b>Tom & \"Jerry\"</b></p>", render(false, "<p>{{& value}}</p>"));
+    }
+
+    @Test
+    public void escapesWholeOutput() {
+        assertEquals("&lt;p&gt;&amp;lt;b&amp;gt;Tom &amp;amp; &amp;quot;Jerry&amp;quot;&amp;lt;/b&amp;gt;&lt;/p&gt;",
+                     render(true, "<p>{{value}}</p>"));
+        assertEquals("&lt;p&gt;&lt;b&gt;Tom &amp; &quot;Jerry&quot;&lt;/b&gt;&lt;/p&gt;", render(true, "<p>{{{value}}}</p>"));
+    }
+
+    @Test
+    public void escapesWholeOutputLikeWicketEscapesTheEvaluatedTemplate() {
+        final String template = "<ul>{{#items}}<li title=\"{{.}}\">{{{.}}}</li>{{/items}}{{^none}}<br/>{{/none}}</ul>\n"
+                                + "{{> de/agilecoders/wicket/mustache/escaping-partial}}";
+
+        assertEquals(Strings.escapeMarkup(render(false, template)).toString(), render(true, template));
+    }
+
+    @Test
+    public void escapesPartials() {
+        assertEquals("<i>&lt;b&gt;Tom &amp; &quot;Jerry&quot;&lt;/b&gt;</i>", render(false, "{{> de/agilecoders/wicket/mustache/escaping-partial}}"));
+        assertEquals("&lt;i&gt;&amp;lt;b&amp;gt;Tom &amp;amp; &amp;quot;Jerry&amp;quot;&amp;lt;/b&amp;gt;&lt;/i&gt;",
+                     render(true, "{{> de/agilecoders/wicket/mustache/escaping-partial}}"));
+    }
+
+    /**
+     * renders given template with a fresh factory.
+     */
+    private static String render(final boolean escapeHtml, final String template) {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("value", VALUE);
+        data.put("items", Arrays.asList("<a>", "b&c"));
+
+        final Mustache mustache = new WicketMustacheFactory(escapeHtml)
+                .compile(new StringReader(template), "de/agilecoders/wicket/mustache/escaping.mustache");
+        final StringWriter writer = new StringWriter();
+        mustache.execute(writer, data);
+
+        return writer.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package de.agilecoders.wicket.mustache;
+
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.core.util.resource.locator.ResourceStreamLocator;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.ResourceStreamNotFoundException;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the templates that {@link WicketMustache} locates next to a component.
+ *
+ * @author miha
+ */
+public class WicketMustacheTest {
+
+    private static final String TEMPLATE = "escaping-partial.mustache";
+
+    private WicketTester tester;
+    private int locates = 0;
+
+    @After
+    public void after() {
+        tester.destroy();
+    }
+
+    @Test
+    public void locatesCachedTemplatesOnlyInDevelopmentMode() {
+        start(RuntimeConfigurationType.DEPLOYMENT);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("<i>Tom</i>", WicketMustache.compile(TEMPLATE, new Scope(), Collections.singletonMap("value", "Tom"), false));
+        }
+        assertEquals(1, locates);
+
+        tester.destroy();
+        locates = 0;
+        start(RuntimeConfigurationType.DEVELOPMENT);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("<i>Tom</i>", WicketMustache.compile(TEMPLATE, new Scope(), Collections.singletonMap("value", "Tom"), false));
+        }
+        assertEquals(3, locates);
+    }
+
+    @Test(expected = ResourceStreamNotFoundException.class)
+    public void throwsIfTemplateReaderCantFindTemplate() throws ResourceStreamNotFoundException {
+        start(RuntimeConfigurationType.DEPLOYMENT);
+
+        WicketMustache.newTemplateReader("missing.mustache", new Scope());
+    }
+
+    private void start(final RuntimeConfigurationType configurationType) {
+        tester = new WicketTester(new MockApplication() {
+            @Override
+            protected void init() {
+                super.init();
+
+                WicketMustache.install(this);
+                getResourceSettings().setResourceStreamLocator(new ResourceStreamLocator(getResourceSettings().getResourceFinders()) {
+                    @Override
+                    public IResourceStream locate(final Class<?> clazz, final String path, final String style, final String variation,
+                                                  final Locale locale, final String extension, final boolean strict) {
+                        locates++;
+
+                        return super.locate(clazz, path, style, variation, locale, extension, strict);
+                    }
+                });
+            }
+
+            @Override
+            public RuntimeConfigurationType getConfigurationType() {
+                return configurationType;
+            }
+        });
+    }
+
+    /**
+     * component the templates are located next to.
+     */
+    private static final class Scope extends WebMarkupContainer {
+        private static final long serialVersionUID = 1L;
+
+        private Scope() {
+            super("scope");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.agilecoders.wicket.mustache.markup.html;
+
+import de.agilecoders.wicket.mustache.WicketMustache;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the template data of the first render of {@link ClientSideMustachePanel}.
+ *
+ * @author miha
+ */
+public class ClientSideMustachePanelTest {
+
+    private WicketTester tester;
+
+    @Before
+    public void before() {
+        tester = new WicketTester(new MockApplication() {
+            @Override
+            protected void init() {
+                super.init();
+
+                WicketMustache.install(this);
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        tester.destroy();
+    }
+
+    @Test
+    public void streamsTemplateData() {
+        tester.startComponentInPage(new TemplatePanel());
+
+        assertTrue(tester.getLastResponse().getDocument(), tester.getLastResponse().getDocument().contains("{\"name\":\"model\"}"));
+    }
+
+    @Test
+    public void usesOverriddenJsonOnFirstRender() {
+        tester.startComponentInPage(new JsonPanel());
+
+        assertTrue(tester.getLastResponse().getDocument(), tester.getLastResponse().getDocument().contains("{\"name\":\"json\"}"));
+        assertFalse(tester.getLastResponse().getDocument().contains("{\"name\":\"model\"}"));
+    }
+
+    /**
+     * panel that renders its model.
+     */
+    private static class TemplatePanel extends ClientSideMustachePanel {
+        private static final long serialVersionUID = 1L;
+
+        private TemplatePanel() {
+            super("panel", new AbstractReadOnlyModel<Object>() {
+                @Override
+                public Object getObject() {
+                    return Collections.singletonMap("name", "model");
+                }
+            });
+        }
+
+        @Override
+        protected IResourceStream newTemplateResourceStream() {
+            return new StringResourceStream("<p>{{name}}</p>");
+        }
+    }
+
+    /**
+     * panel that creates its json itself.
+     */
+    private static final class JsonPanel extends TemplatePanel {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected CharSequence createTemplateDataAsJsonString() {
+            return "{\"name\":\"json\"}";
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package de.agilecoders.wicket.mustache.markup.html;
+
+import de.agilecoders.wicket.mustache.WicketMustache;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.apache.wicket.util.resource.IResourceStream;
+import org.apache.wicket.util.resource.StringResourceStream;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the output and markup caches of {@link MustachePanel}.
+ *
+ * @author miha
+ */
+public class MustachePanelTest {
+
+    private WicketTester tester;
+
+    @After
+    public void after() {
+        tester.destroy();
+    }
+
+    @Test
+    public void readsTemplateOnlyIfOutputIsntCached() {
+        start(RuntimeConfigurationType.DEPLOYMENT);
+
+        final VersionedPanel first = render(new VersionedPanel("Tom", "1"));
+        assertEquals(1, first.reads);
+
+        final VersionedPanel second = render(new VersionedPanel("Jerry", "1"));
+        assertTrue(tester.getLastResponseAsString().contains("<p>Tom</p>"));
+        assertEquals(0, second.reads);
+
+        final VersionedPanel third = render(new VersionedPanel("Jerry", "2"));
+        assertTrue(tester.getLastResponseAsString().contains("<p>Jerry</p>"));
+        assertEquals(1, third.reads);
+    }
+
+    @Test
+    public void rendersModifiedTemplatesInDevelopmentMode() {
+        start(RuntimeConfigurationType.DEVELOPMENT);
+
+        render(new VersionedPanel("Tom", "1"));
+        assertTrue(tester.getLastResponseAsString().contains("<p>Tom</p>"));
+
+        final VersionedPanel modified = new VersionedPanel("Jerry", "1");
+        modified.template = "<b>{{name}}</b>";
+        render(modified);
+        assertTrue(tester.getLastResponseAsString().contains("<b>Jerry</b>"));
+    }
+
+    @Test
+    public void cachesMarkupByTemplate() {
+        start(RuntimeConfigurationType.DEPLOYMENT);
+
+        render(new MarkupCachedPanel("<p>{{name}}</p>"));
+        assertTrue(tester.getLastResponseAsString().contains("<p>Tom</p>"));
+
+        render(new MarkupCachedPanel("<p>{{name}}</p>"));
+        assertTrue(tester.getLastResponseAsString().contains("<p>Tom</p>"));
+
+        // same class and markup cache key, but another template
+        render(new MarkupCachedPanel("<b>{{name}}</b>"));
+        assertTrue(tester.getLastResponseAsString().contains("<b>Tom</b>"));
+    }
+
+    private void start(final RuntimeConfigurationType configurationType) {
+        tester = new WicketTester(new MockApplication() {
+            @Override
+            protected void init() {
+                super.init();
+
+                WicketMustache.install(this);
+            }
+
+            @Override
+            public RuntimeConfigurationType getConfigurationType() {
+                return configurationType;
+            }
+        });
+    }
+
+    private <T extends MustachePanel> T render(final T panel) {
+        tester.startComponentInPage(panel);
+
+        return panel;
+    }
+
+    /**
+     * panel whose output is cached by model version and that counts how often its template is read.
+     */
+    private static final class VersionedPanel extends MustachePanel {
+        private static final long serialVersionUID = 1L;
+
+        private final String version;
+        private String template = "<p>{{name}}</p>";
+        private int reads = 0;
+
+        private VersionedPanel(final String name, final String version) {
+            super("panel", new AbstractReadOnlyModel<Object>() {
+                @Override
+                public Object getObject() {
+                    return Collections.singletonMap("name", name);
+                }
+            });
+
+            this.version = version;
+        }
+
+        @Override
+        protected String getModelVersion() {
+            return version;
+        }
+
+        @Override
+        protected IResourceStream newTemplateResourceStream() {
+            reads++;
+
+            return new StringResourceStream(template);
+        }
+    }
+
+    /**
+     * panel whose evaluated template is cached as markup with a constant key.
+     */
+    private static final class MarkupCachedPanel extends MustachePanel {
+        private static final long serialVersionUID = 1L;
+
+        private final String template;
+
+        private MarkupCachedPanel(final String template) {
+            super("panel", new AbstractReadOnlyModel<Object>() {
+                @Override
+                public Object getObject() {
+                    return Collections.singletonMap("name", "Tom");
+                }
+            });
+
+            this.template = template;
+        }
+
+        @Override
+        protected String newMarkupCacheKey() {
+            return "tom";
+        }
+
+        @Override
+        protected IResourceStream newTemplateResourceStream() {
+            return new StringResourceStream(template);
+        }
+    }
+}
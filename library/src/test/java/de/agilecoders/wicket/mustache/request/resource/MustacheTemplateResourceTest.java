@@ -0,0 +1,41 @@
+package de.agilecoders.wicket.mustache.request.resource;
+
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that {@link MustacheTemplateResource} serves templates independent of the platform charset.
+ *
+ * @author miha
+ */
+public class MustacheTemplateResourceTest {
+
+    private WicketTester tester;
+
+    @Before
+    public void before() {
+        tester = new WicketTester(new MockApplication());
+    }
+
+    @After
+    public void after() {
+        tester.destroy();
+    }
+
+    @Test
+    public void servesUtf8Templates() throws UnsupportedEncodingException {
+        tester.startResource(new MustacheTemplateResource(MustacheTemplateResourceTest.class, "umlauts.mustache", null, null, null,
+                                                          "umlauts"));
+
+        assertEquals("(window." + MustacheTemplateReference.TEMPLATES + " = window." + MustacheTemplateReference.TEMPLATES
+                     + " || {})[\"umlauts\"] = \"<p>ä € {{name}}</p>\";",
+                     new String(tester.getLastResponse().getBinaryContent(), "UTF-8"));
+    }
+}
@@ -0,0 +1,125 @@
+package de.agilecoders.wicket.mustache.util;
+
+import org.apache.wicket.util.string.Strings;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the {@link Html} helper functions.
+ *
+ * @author miha
+ */
+public class HtmlTest {
+
+    @Test
+    public void escapesHtmlCharacters() {
+        assertEquals("&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&#039;s&lt;/a&gt;", Html.escape("<a href=\"x\">Tom & Jerry's</a>"));
+    }
+
+    @Test
+    public void escapesLikeWicket() {
+        final String value = "<b>\"1\" & '2'</b>\u00e4\u20ac";
+
+        assertEquals(Strings.escapeMarkup(value).toString(), Html.escape(value));
+    }
+
+    @Test
+    public void escapesNonPrintableCharactersExceptWhitespace() {
+        assertEquals("a&#0;b&#27;c\t\n\r", Html.escape("a\u0000b\u001bc\t\n\r"));
+    }
+
+    @Test
+    public void keepsValuesWithoutHtmlCharacters() {
+        assertEquals("", Html.escape(""));
+        assertEquals("plain text", Html.escape("plain text"));
+    }
+
+    @Test
+    public void writesEscapedValue() throws IOException {
+        final StringWriter writer = new StringWriter();
+        Html.escape("<i>", writer);
+        Html.escape(" & ", writer);
+        Html.escape("text", writer);
+
+        assertEquals("&lt;i&gt; &amp; text", writer.toString());
+    }
+
+    @Test
+    public void writesValueWithoutHtmlCharactersAtOnce() throws IOException {
+        final String value = "plain text";
+        final RecordingWriter writer = new RecordingWriter();
+        Html.escape(value, writer);
+
+        assertSame(value, writer.last);
+    }
+
+    @Test
+    public void escapingWriterEscapesEverythingThatIsWritten() throws IOException {
+        final StringWriter target = new StringWriter();
+        final Writer writer = Html.escaping(target);
+        writer.write("<p>");
+        writer.write("a&b".toCharArray(), 1, 2);
+        writer.write("x\"y'z", 1, 3);
+        writer.write('>');
+        writer.flush();
+
+        assertEquals("&lt;p&gt;&amp;b&quot;y&#039;&gt;", target.toString());
+    }
+
+    @Test
+    public void escapingWriterEscapesTwiceIfValueIsEscapedBefore() throws IOException {
+        final StringWriter target = new StringWriter();
+        Html.escape("<b>", Html.escaping(target));
+
+        assertEquals("&amp;lt;b&amp;gt;", target.toString());
+    }
+
+    @Test
+    public void escapesTwiceLikeWicketEscapesEscapedValues() throws IOException {
+        final String value = "<b>\"1\" & '2'</b>\u0000\u00e4";
+        final StringWriter writer = new StringWriter();
+        Html.escapeTwice(value, writer);
+
+        assertEquals(Strings.escapeMarkup(Strings.escapeMarkup(value)).toString(), writer.toString());
+    }
+
+    @Test
+    public void writesValueWithoutHtmlCharactersAtOnceIfEscapedTwice() throws IOException {
+        final String value = "plain text";
+        final RecordingWriter writer = new RecordingWriter();
+        Html.escapeTwice(value, writer);
+
+        assertSame(value, writer.last);
+    }
+
+    /**
+     * remembers the last written string.
+     */
+    private static final class RecordingWriter extends Writer {
+        private String last;
+
+        @Override
+        public void write(final String value) {
+            last = value;
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            last = new String(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
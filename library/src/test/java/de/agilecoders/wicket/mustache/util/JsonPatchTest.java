@@ -0,0 +1,96 @@
+package de.agilecoders.wicket.mustache.util;
+
+import org.apache.wicket.util.io.IOUtils;
+import org.codehaus.jackson.JsonNode;
+import org.junit.Assume;
+import org.junit.Test;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link JsonPatch}.
+ *
+ * @author miha
+ */
+public class JsonPatchTest {
+
+    @Test
+    public void equalValuesHaveAnEmptyPatch() {
+        assertPatch("{\"a\":[1,{\"b\":null}]}", "{\"a\":[1,{\"b\":null}]}", "[]");
+    }
+
+    @Test
+    public void replacesChangedValues() {
+        assertPatch("{\"a\":1,\"b\":{\"c\":\"x\"}}", "{\"a\":1,\"b\":{\"c\":\"y\"}}",
+                    "[{\"op\":\"replace\",\"path\":\"/b/c\",\"value\":\"y\"}]");
+    }
+
+    @Test
+    public void addsAndRemovesFields() {
+        assertPatch("{\"a\":1,\"b\":2}", "{\"b\":2,\"c\":{\"d\":3}}",
+                    "[{\"op\":\"remove\",\"path\":\"/a\"},{\"op\":\"add\",\"path\":\"/c\",\"value\":{\"d\":3}}]");
+    }
+
+    @Test
+    public void addsArrayElementsInOrder() {
+        assertPatch("[1]", "[1,2,3]", "[{\"op\":\"add\",\"path\":\"/1\",\"value\":2},{\"op\":\"add\",\"path\":\"/2\",\"value\":3}]");
+    }
+
+    @Test
+    public void removesArrayElementsFromTheEnd() {
+        assertPatch("[1,2,3,4]", "[1,5]",
+                    "[{\"op\":\"replace\",\"path\":\"/1\",\"value\":5},{\"op\":\"remove\",\"path\":\"/3\"},{\"op\":\"remove\",\"path\":\"/2\"}]");
+    }
+
+    @Test
+    public void replacesValuesOfAnotherType() {
+        assertPatch("{\"a\":[1]}", "{\"a\":{\"0\":1}}", "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":{\"0\":1}}]");
+        assertPatch("[1]", "{\"a\":1}", "[{\"op\":\"replace\",\"path\":\"\",\"value\":{\"a\":1}}]");
+    }
+
+    @Test
+    public void escapesFieldNames() {
+        assertPatch("{\"a/b~c\":1}", "{\"a/b~c\":2}", "[{\"op\":\"replace\",\"path\":\"/a~1b~0c\",\"value\":2}]");
+    }
+
+    @Test
+    public void patchesAreAppliedByTheClient() throws Exception {
+        final ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+        Assume.assumeNotNull(engine);
+
+        engine.eval("var window = this, jQuery = {isArray: function (v) { return Object.prototype.toString.call(v) === '[object Array]'; }};");
+        final Reader script = new InputStreamReader(JsonPatch.class.getResourceAsStream("/de/agilecoders/wicket/mustache/request/resource/wicket-mustache.js"), "UTF-8");
+        try {
+            engine.eval(script);
+        } finally {
+            IOUtils.closeQuietly(script);
+        }
+        engine.eval("WicketMustache.render = function (id, template, data) { WicketMustache.data[id] = data; };");
+
+        final String[][] pairs = new String[][] {
+                {"{\"items\":[{\"name\":\"a\"},{\"name\":\"b\"},{\"name\":\"c\"}],\"total\":3}",
+                 "{\"items\":[{\"name\":\"a\",\"new\":true},{\"name\":\"x\"}],\"total\":2,\"page\":1}"},
+                {"{\"a/b~c\":[1,2],\"d\":{\"e\":null}}", "{\"a/b~c\":[2,1,0],\"d\":[]}"},
+                {"[1,2,3]", "{\"a\":1}"}
+        };
+
+        for (final String[] pair : pairs) {
+            final JsonNode source = Json.parse(pair[0]);
+            final JsonNode target = Json.parse(pair[1]);
+
+            engine.eval("WicketMustache.hydrate('id', " + pair[0] + ");");
+            engine.eval("WicketMustache.patch('id', null, " + Json.stringify(JsonPatch.diff(source, target)) + ");");
+
+            assertEquals(target, Json.parse((String) engine.eval("JSON.stringify(WicketMustache.data['id'])")));
+        }
+    }
+
+    private static void assertPatch(final String source, final String target, final String expected) {
+        assertEquals(Json.parse(expected), JsonPatch.diff(Json.parse(source), Json.parse(target)));
+    }
+}
@@ -0,0 +1,88 @@
+package de.agilecoders.wicket.mustache.it;
+
+import de.agilecoders.wicket.mustache.MustacheSettings;
+import de.agilecoders.wicket.mustache.PrecompiledTemplates;
+import de.agilecoders.wicket.mustache.TemplateKey;
+import de.agilecoders.wicket.mustache.TemplateSource;
+import de.agilecoders.wicket.mustache.WicketMustache;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads the templates that were embedded by the wicket-mustache-maven-plugin.
+ */
+public class EmbeddedTemplatesTest {
+
+    private static final String PAGE = "de/agilecoders/wicket/mustache/it/page.mustache";
+    private static final String ITEM = "de/agilecoders/wicket/mustache/it/item.mustache";
+
+    private MustacheSettings settings;
+    private WicketTester tester;
+
+    @Before
+    public void before() {
+        settings = new MustacheSettings();
+        tester = new WicketTester(new MockApplication() {
+            @Override
+            protected void init() {
+                super.init();
+
+                WicketMustache.install(this, settings);
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        tester.destroy();
+    }
+
+    @Test
+    public void registersEmbeddedTemplates() {
+        final Iterator<PrecompiledTemplates> services = ServiceLoader.load(PrecompiledTemplates.class).iterator();
+
+        assertTrue(services.hasNext());
+
+        final PrecompiledTemplates templates = services.next();
+        assertEquals(PrecompileMustacheTemplates.class, templates.getClass());
+        assertEquals(Arrays.asList(ITEM, PAGE), Arrays.asList(templates.getTemplates().keySet().toArray()));
+        assertEquals("<li>{{name}}</li>\n", templates.getTemplates().get(ITEM));
+    }
+
+    @Test
+    public void compilesEmbeddedTemplatesWhenApplicationIsInitialized() {
+        final String source = new PrecompileMustacheTemplates().getTemplates().get(PAGE);
+        final TemplateSource page = TemplateSource.of(TemplateKey.ofPath(PAGE, null, null, null), source);
+
+        assertNotNull(settings.getCache().getIfPresent(page.getIdentity(), false));
+        assertNotNull(settings.getCache().getIfPresent(page.getIdentity(), true));
+    }
+
+    @Test
+    public void rendersEmbeddedTemplates() {
+        final Map<String, Object> data = new HashMap<String, Object>();
+        data.put("title", "Tom & Jerry");
+        data.put("items", Arrays.asList(Collections.singletonMap("name", "Tom"), Collections.singletonMap("name", "Jerry")));
+
+        final String source = new PrecompileMustacheTemplates().getTemplates().get(PAGE);
+        final long misses = settings.getCache().missCount();
+
+        assertEquals("<h1>Tom &amp; Jerry</h1>\n<ul><li>Tom</li>\n<li>Jerry</li>\n</ul>\n",
+                     WicketMustache.compile(WicketMustache.mustache(TemplateSource.of(source), false), data));
+        assertEquals(misses, settings.getCache().missCount());
+    }
+}
@@ -0,0 +1,14 @@
+// the plugin generated the class and registered it as service
+def generated = new File(basedir, "target/generated-sources/mustache/de/agilecoders/wicket/mustache/it/PrecompileMustacheTemplates.java")
+assert generated.isFile()
+assert generated.text.contains('"de/agilecoders/wicket/mustache/it/page.mustache"')
+assert generated.text.contains('"de/agilecoders/wicket/mustache/it/item.mustache"')
+
+def service = new File(basedir, "target/classes/META-INF/services/de.agilecoders.wicket.mustache.PrecompiledTemplates")
+assert service.isFile()
+assert service.text.trim() == "de.agilecoders.wicket.mustache.it.PrecompileMustacheTemplates"
+
+// the test that loads the embedded templates was run
+assert new File(basedir, "target/surefire-reports/de.agilecoders.wicket.mustache.it.EmbeddedTemplatesTest.txt").isFile()
+
+return true
@@ -0,0 +1,149 @@
+package de.agilecoders.wicket.mustache.maven;
+
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validates all mustache templates of the project and embeds them into a generated
+ * {@link de.agilecoders.wicket.mustache.PrecompiledTemplates} class. The build fails if a template can't be
+ * compiled, at runtime all templates are compiled when the application is initialized.
+ *
+ * @author miha
+ * @goal precompile
+ * @phase generate-sources
+ * @threadSafe
+ */
+public class PrecompileMojo extends AbstractMojo {
+
+    /**
+     * @parameter default-value="${project}"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * the directories that contain templates. Default: all compile source roots and resource directories.
+     *
+     * @parameter
+     */
+    private File[] sourceDirectories;
+
+    /**
+     * the directory of the generated class.
+     *
+     * @parameter default-value="${project.build.directory}/generated-sources/mustache"
+     * @required
+     */
+    private File outputDirectory;
+
+    /**
+     * the directory of the generated service registration.
+     *
+     * @parameter default-value="${project.build.directory}/generated-resources/mustache"
+     * @required
+     */
+    private File resourceOutputDirectory;
+
+    /**
+     * the fully qualified name of the generated class. Default: derived from group and artifact id, e.g.
+     * "de.agilecoders.wicket.mustache.SamplesMustacheTemplates"
+     *
+     * @parameter property="mustache.className"
+     */
+    private String className;
+
+    /**
+     * the encoding of the templates.
+     *
+     * @parameter property="mustache.encoding" default-value="${project.build.sourceEncoding}"
+     */
+    private String encoding;
+
+    /**
+     * whether to skip the precompilation.
+     *
+     * @parameter property="mustache.skip" default-value="false"
+     */
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("skipping precompilation of mustache templates");
+            return;
+        }
+
+        final TemplatePrecompiler precompiler = new TemplatePrecompiler(sourceDirectories(), encoding != null ? encoding : "UTF-8");
+        final Map<String, String> templates;
+
+        try {
+            templates = precompiler.read();
+        } catch (IOException e) {
+            throw new MojoExecutionException("can't read mustache templates", e);
+        }
+
+        if (templates.isEmpty()) {
+            getLog().info("no mustache templates found");
+            return;
+        }
+
+        final Map<String, String> errors = precompiler.validate(templates);
+        if (!errors.isEmpty()) {
+            for (final Map.Entry<String, String> error : errors.entrySet()) {
+                getLog().error(error.getKey() + ": " + error.getValue());
+            }
+
+            throw new MojoFailureException(errors.size() + " of " + templates.size() + " mustache templates can't be compiled");
+        }
+
+        final String name = className != null ? className : TemplatePrecompiler.className(project.getGroupId(), project.getArtifactId());
+        try {
+            precompiler.generate(templates, name, outputDirectory, resourceOutputDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException("can't generate " + name, e);
+        }
+
+        project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+
+        final Resource resource = new Resource();
+        resource.setDirectory(resourceOutputDirectory.getAbsolutePath());
+        project.addResource(resource);
+
+        getLog().info("precompiled " + templates.size() + " mustache templates into " + name);
+    }
+
+    /**
+     * @return the configured source directories or all compile source roots and resource directories
+     */
+    private List<File> sourceDirectories() {
+        if (sourceDirectories != null) {
+            return Arrays.asList(sourceDirectories);
+        }
+
+        final List<File> directories = new ArrayList<File>();
+        for (final Object root : project.getCompileSourceRoots()) {
+            final File directory = new File((String) root);
+
+            if (!directory.equals(outputDirectory)) {
+                directories.add(directory);
+            }
+        }
+
+        for (final Object resource : project.getResources()) {
+            directories.add(new File(((Resource) resource).getDirectory()));
+        }
+
+        return directories;
+    }
+}
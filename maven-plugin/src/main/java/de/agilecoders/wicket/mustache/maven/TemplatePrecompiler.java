@@ -0,0 +1,317 @@
+package de.agilecoders.wicket.mustache.maven;
+
+import de.agilecoders.wicket.mustache.PrecompiledTemplates;
+import de.agilecoders.wicket.mustache.TemplatePreloader;
+import de.agilecoders.wicket.mustache.WicketMustacheFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds all <code>*.mustache</code> templates of the given source directories, compiles them to find syntax errors
+ * and generates a {@link PrecompiledTemplates} implementation that embeds their sources. The generated class is
+ * registered as service, so that the {@link TemplatePreloader} compiles all templates when the application is
+ * initialized without scanning the class path.
+ *
+ * @author miha
+ */
+public class TemplatePrecompiler {
+
+    /**
+     * maximum number of characters of a single string literal, which keeps the utf-8 encoded constant far below
+     * the class file limit of 65535 bytes
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private final List<File> sourceDirectories;
+    private final String encoding;
+
+    /**
+     * Construct.
+     *
+     * @param sourceDirectories the directories that contain templates, e.g. src/main/java and src/main/resources
+     * @param encoding          the encoding of the templates
+     */
+    public TemplatePrecompiler(final List<File> sourceDirectories, final String encoding) {
+        this.sourceDirectories = new ArrayList<File>(sourceDirectories);
+        this.encoding = encoding;
+    }
+
+    /**
+     * reads all templates of the source directories. If the same path exists in more than one directory, the
+     * template of the first directory is used, like the class loader does.
+     *
+     * @return the template sources mapped by their class path
+     * @throws IOException if a template can't be read
+     */
+    public Map<String, String> read() throws IOException {
+        final Map<String, File> files = new TreeMap<String, File>();
+
+        for (final File directory : sourceDirectories) {
+            scan(directory, "", files);
+        }
+
+        final Map<String, String> templates = new LinkedHashMap<String, String>();
+        for (final Map.Entry<String, File> file : files.entrySet()) {
+            templates.put(file.getKey(), read(file.getValue()));
+        }
+
+        return templates;
+    }
+
+    private void scan(final File directory, final String path, final Map<String, File> files) {
+        final File[] children = directory.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                if (child.isDirectory()) {
+                    scan(child, path + child.getName() + "/", files);
+                } else if (child.getName().endsWith(TemplatePreloader.EXTENSION) && !files.containsKey(path + child.getName())) {
+                    files.put(path + child.getName(), child);
+                }
+            }
+        }
+    }
+
+    private String read(final File file) throws IOException {
+        final Reader reader = new InputStreamReader(new FileInputStream(file), encoding);
+
+        try {
+            final StringBuilder content = new StringBuilder((int) file.length());
+            final char[] buffer = new char[4096];
+            int read;
+
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+
+            return content.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * compiles all templates with the same parser that is used at runtime. Partials are resolved against the
+     * source directories.
+     *
+     * @param templates the template sources mapped by their class path
+     * @return the errors mapped by template path, empty if all templates are valid
+     */
+    public Map<String, String> validate(final Map<String, String> templates) {
+        final Map<String, String> errors = new LinkedHashMap<String, String>();
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+
+        // the mustache factory loads partials with the context class loader
+        thread.setContextClassLoader(newClassLoader(contextClassLoader));
+        try {
+            for (final Map.Entry<String, String> template : templates.entrySet()) {
+                final WicketMustacheFactory factory = new WicketMustacheFactory(true);
+
+                try {
+                    factory.compile(new StringReader(template.getValue()), template.getKey());
+                } catch (RuntimeException e) {
+                    errors.put(template.getKey(), String.valueOf(e.getMessage()));
+                }
+            }
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+
+        return errors;
+    }
+
+    private ClassLoader newClassLoader(final ClassLoader parent) {
+        final List<URL> urls = new ArrayList<URL>();
+
+        for (final File directory : sourceDirectories) {
+            try {
+                urls.add(directory.toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("invalid source directory: " + directory, e);
+            }
+        }
+
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), parent);
+    }
+
+    /**
+     * writes the java source of the {@link PrecompiledTemplates} implementation and its service registration.
+     *
+     * @param templates         the template sources mapped by their class path
+     * @param className         the fully qualified name of the generated class
+     * @param sourceDirectory   the directory of generated java sources
+     * @param resourceDirectory the directory of generated resources
+     * @throws IOException if a file can't be written
+     */
+    public void generate(final Map<String, String> templates, final String className, final File sourceDirectory,
+                         final File resourceDirectory) throws IOException {
+        final int separator = className.lastIndexOf('.');
+        final String packageName = separator > 0 ? className.substring(0, separator) : null;
+        final String simpleName = className.substring(separator + 1);
+
+        final StringBuilder source = new StringBuilder();
+        if (packageName != null) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import ").append(PrecompiledTemplates.class.getName()).append(";\n\n")
+              .append("import java.util.Collections;\n")
+              .append("import java.util.LinkedHashMap;\n")
+              .append("import java.util.Map;\n\n")
+              .append("/**\n")
+              .append(" * mustache templates that were validated at build time, generated by wicket-mustache-maven-plugin.\n")
+              .append(" */\n")
+              .append("public final class ").append(simpleName).append(" implements PrecompiledTemplates {\n")
+              .append("    private static final Map<String, String> TEMPLATES;\n\n")
+              .append("    static {\n")
+              .append("        final Map<String, String> templates = new LinkedHashMap<String, String>();\n");
+
+        int index = 0;
+        for (final String path : templates.keySet()) {
+            source.append("        templates.put(").append(literal(path)).append(", template").append(index++).append("());\n");
+        }
+
+        source.append("        TEMPLATES = Collections.unmodifiableMap(templates);\n")
+              .append("    }\n\n")
+              .append("    public Map<String, String> getTemplates() {\n")
+              .append("        return TEMPLATES;\n")
+              .append("    }\n");
+
+        index = 0;
+        for (final String content : templates.values()) {
+            // one method per template keeps each method far below the byte code limit
+            source.append("\n    private static String template").append(index++).append("() {\n")
+                  .append("        return new StringBuilder(").append(content.length()).append(")");
+
+            for (int start = 0; start < content.length(); start += CHUNK_SIZE) {
+                source.append("\n                .append(")
+                      .append(literal(content.substring(start, Math.min(content.length(), start + CHUNK_SIZE))))
+                      .append(")");
+            }
+
+            source.append("\n                .toString();\n")
+                  .append("    }\n");
+        }
+        source.append("}\n");
+
+        final File packageDirectory = packageName != null
+                                      ? new File(sourceDirectory, packageName.replace('.', File.separatorChar))
+                                      : sourceDirectory;
+        write(new File(packageDirectory, simpleName + ".java"), source);
+        write(new File(resourceDirectory, "META-INF/services/" + PrecompiledTemplates.class.getName()), className + "\n");
+    }
+
+    private void write(final File file, final CharSequence content) throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can't create directory: " + directory);
+        }
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.append(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param value The string value
+     * @return a java string literal of given value, all non ascii characters are unicode escapes
+     */
+    static String literal(final String value) {
+        final StringBuilder literal = new StringBuilder(value.length() + 16).append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+
+        return literal.append('"').toString();
+    }
+
+    /**
+     * creates the default name of the generated class, which is unique per maven module.
+     *
+     * @param groupId    The group id of the module
+     * @param artifactId The artifact id of the module
+     * @return the fully qualified class name, e.g. "de.agilecoders.wicket.SamplesMustacheTemplates"
+     */
+    public static String className(final String groupId, final String artifactId) {
+        final StringBuilder packageName = new StringBuilder();
+
+        for (final String part : groupId.split("\\.")) {
+            final String identifier = identifier(part, false);
+
+            if (identifier.length() > 0) {
+                packageName.append(identifier).append('.');
+            }
+        }
+
+        return packageName + identifier(artifactId, true) + "MustacheTemplates";
+    }
+
+    /**
+     * @return a valid java identifier of given name
+     */
+    private static String identifier(final String name, final boolean camelCase) {
+        final StringBuilder identifier = new StringBuilder(name.length());
+        boolean upperCase = camelCase;
+
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+
+            if (Character.isJavaIdentifierPart(c)) {
+                identifier.append(upperCase ? Character.toUpperCase(c) : c);
+                upperCase = false;
+            } else {
+                upperCase = camelCase;
+            }
+        }
+
+        if (identifier.length() > 0 && !Character.isJavaIdentifierStart(identifier.charAt(0))) {
+            identifier.insert(0, '_');
+        }
+
+        return identifier.toString();
+    }
+}
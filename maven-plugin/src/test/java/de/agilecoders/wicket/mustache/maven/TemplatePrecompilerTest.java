@@ -0,0 +1,210 @@
+package de.agilecoders.wicket.mustache.maven;
+
+import de.agilecoders.wicket.mustache.MustacheSettings;
+import de.agilecoders.wicket.mustache.PrecompiledTemplates;
+import de.agilecoders.wicket.mustache.TemplatePreloader;
+import org.apache.wicket.application.IClassResolver;
+import org.apache.wicket.mock.MockApplication;
+import org.apache.wicket.util.tester.WicketTester;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Tests {@link TemplatePrecompiler}: the generated class is compiled and its templates are loaded like at runtime.
+ *
+ * @author miha
+ */
+public class TemplatePrecompilerTest {
+
+    private static final String PAGE = "de/agilecoders/wicket/mustache/page.mustache";
+    private static final String ITEM = "de/agilecoders/wicket/mustache/item.mustache";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File sources;
+    private File resources;
+    private WicketTester tester;
+
+    @Before
+    public void before() throws IOException {
+        sources = folder.newFolder("java");
+        resources = folder.newFolder("resources");
+
+        write(new File(resources, PAGE), "<h1>{{title}}</h1>ä\n<ul>{{#items}}{{> de/agilecoders/wicket/mustache/item}}{{/items}}</ul>");
+        write(new File(resources, ITEM), "<li>{{name}}</li>");
+        write(new File(sources, "de/agilecoders/wicket/mustache/Page.java"), "class Page {}");
+    }
+
+    @After
+    public void after() {
+        if (tester != null) {
+            tester.destroy();
+        }
+    }
+
+    @Test
+    public void readsTemplatesOfAllDirectories() throws IOException {
+        final Map<String, String> templates = precompiler().read();
+
+        assertEquals(Arrays.asList(ITEM, PAGE), Arrays.asList(templates.keySet().toArray()));
+        assertEquals("<li>{{name}}</li>", templates.get(ITEM));
+    }
+
+    @Test
+    public void validatesTemplatesAndPartials() throws IOException {
+        write(new File(resources, "de/agilecoders/wicket/mustache/broken.mustache"), "{{#items}}<li>{{/item}}");
+        write(new File(resources, "de/agilecoders/wicket/mustache/cached.mustache"), "{{#cache nav 60}}{{> de/agilecoders/wicket/mustache/item}}{{/cache}}");
+
+        final Map<String, String> errors = precompiler().validate(precompiler().read());
+
+        assertEquals(Collections.singleton("de/agilecoders/wicket/mustache/broken.mustache"), errors.keySet());
+    }
+
+    @Test
+    public void generatesEmbeddedTemplates() throws Exception {
+        final ClassLoader classLoader = compileGenerated();
+        final Iterator<PrecompiledTemplates> services = ServiceLoader.load(PrecompiledTemplates.class, classLoader).iterator();
+
+        assertTrue(services.hasNext());
+
+        final PrecompiledTemplates templates = services.next();
+        assertEquals("de.agilecoders.wicket.mustache.SamplesMustacheTemplates", templates.getClass().getName());
+        assertEquals(precompiler().read(), templates.getTemplates());
+        assertFalse(services.hasNext());
+    }
+
+    @Test
+    public void preloadsEmbeddedTemplates() throws Exception {
+        final ClassLoader classLoader = compileGenerated();
+        final MustacheSettings settings = new MustacheSettings();
+
+        tester = new WicketTester(new MockApplication());
+        tester.getApplication().getApplicationSettings().setClassResolver(new ClassLoaderResolver(classLoader));
+
+        // partials are loaded with the context class loader, like in a web application
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        final TemplatePreloader.Report report;
+
+        thread.setContextClassLoader(classLoader);
+        try {
+            report = new TemplatePreloader(tester.getApplication(), settings).preload();
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+
+        assertEquals(2, report.getTemplates());
+        assertTrue(report.getFailures().toString(), report.getFailures().isEmpty());
+        // both templates in both escape modes
+        assertEquals(4, settings.getCache().size());
+    }
+
+    @Test
+    public void createsClassNames() {
+        assertEquals("de.agilecoders.wicket.mustache.SamplesMustacheTemplates",
+                     TemplatePrecompiler.className("de.agilecoders.wicket.mustache", "samples"));
+        assertEquals("com.example.MyWebAppMustacheTemplates", TemplatePrecompiler.className("com.example", "my-web.app"));
+        assertEquals("_1st.SiteMustacheTemplates", TemplatePrecompiler.className("1st", "site"));
+    }
+
+    @Test
+    public void escapesLiterals() {
+        assertEquals("\"<a href=\\\"x\\\">\\\\n\\u00e4\\n\\t</a>\"", TemplatePrecompiler.literal("<a href=\"x\">\\nä\n\t</a>"));
+    }
+
+    private TemplatePrecompiler precompiler() {
+        return new TemplatePrecompiler(Arrays.asList(sources, resources), "UTF-8");
+    }
+
+    /**
+     * generates and compiles the embedded templates.
+     *
+     * @return a class loader that loads the generated class and its service registration
+     */
+    private ClassLoader compileGenerated() throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+
+        final File generatedSources = folder.newFolder("generated-sources");
+        final File generatedResources = folder.newFolder("generated-resources");
+        final File classes = folder.newFolder("classes");
+        final TemplatePrecompiler precompiler = precompiler();
+
+        precompiler.generate(precompiler.read(), "de.agilecoders.wicket.mustache.SamplesMustacheTemplates",
+                             generatedSources, generatedResources);
+
+        final File source = new File(generatedSources, "de/agilecoders/wicket/mustache/SamplesMustacheTemplates.java");
+        assertNotNull(source);
+        assertEquals(0, compiler.run(null, null, null, "-nowarn", "-d", classes.getPath(),
+                                     "-cp", System.getProperty("java.class.path"), source.getPath()));
+
+        return new URLClassLoader(new URL[]{classes.toURI().toURL(), generatedResources.toURI().toURL(), resources.toURI().toURL()},
+                                  getClass().getClassLoader());
+    }
+
+    private static void write(final File file, final String content) throws IOException {
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * resolves classes and resources with a given class loader.
+     */
+    private static final class ClassLoaderResolver implements IClassResolver {
+        private final ClassLoader classLoader;
+
+        private ClassLoaderResolver(final ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public Class<?> resolveClass(final String className) throws ClassNotFoundException {
+            return Class.forName(className, false, classLoader);
+        }
+
+        @Override
+        public Iterator<URL> getResources(final String name) {
+            try {
+                return Collections.list(classLoader.getResources(name)).iterator();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return classLoader;
+        }
+    }
+}
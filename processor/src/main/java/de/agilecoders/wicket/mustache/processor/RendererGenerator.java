@@ -0,0 +1,550 @@
+package de.agilecoders.wicket.mustache.processor;
+
+import de.agilecoders.wicket.mustache.typed.TypedRenderer;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the values and sections of a template against the model type and generates the source of a
+ * {@link TypedRenderer}. Values are looked up like mustache.java does: the innermost section scope that has a
+ * method <code>name()</code>, <code>getName()</code>, <code>isName()</code> or a field <code>name</code> wins,
+ * dotted names are resolved member by member.
+ *
+ * @author miha
+ */
+final class RendererGenerator {
+
+    /**
+     * maximum number of characters of a single string literal
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * how a section iterates its value
+     */
+    private enum Iteration {
+        BOOLEAN, ITERABLE, ITERATOR, ARRAY, STRING, OBJECT
+    }
+
+    private final Types types;
+    private final Elements elements;
+    private final String packageName;
+    private final String template;
+    private final List<String> errors = new ArrayList<String>();
+    private final StringBuilder body = new StringBuilder();
+    private int counter = 0;
+
+    /**
+     * Construct.
+     *
+     * @param types       The type utilities of the processing environment
+     * @param elements    The element utilities of the processing environment
+     * @param packageName The package of the generated renderer
+     * @param template    The template path, which is used in error messages
+     */
+    RendererGenerator(final Types types, final Elements elements, final String packageName, final String template) {
+        this.types = types;
+        this.elements = elements;
+        this.packageName = packageName;
+        this.template = template;
+    }
+
+    /**
+     * @return all errors that were found while generating the renderer
+     */
+    List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * generates the source of the renderer.
+     *
+     * @param simpleName The simple name of the renderer class
+     * @param origin     The qualified name of the annotated class
+     * @param model      The model type
+     * @param nodes      The template nodes
+     * @return the java source of the renderer
+     */
+    String generate(final String simpleName, final String origin, final TypeMirror model, final List<TemplateTree.Node> nodes) {
+        final String modelName = typeName(model);
+        final List<Scope> scopes = new ArrayList<Scope>();
+        scopes.add(new Scope("s0", model));
+
+        nodes(nodes, scopes, 2);
+
+        final StringBuilder source = new StringBuilder();
+        if (packageName.length() > 0) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        return source.append("/**\n")
+                .append(" * typed renderer of ").append(template).append(" for ").append(origin)
+                .append(", generated by wicket-mustache-processor.\n")
+                .append(" */\n")
+                .append("public final class ").append(simpleName).append(" extends ").append(TypedRenderer.class.getName())
+                .append("<").append(modelName).append("> {\n\n")
+                .append("    @Override\n")
+                .append("    public Class<").append(modelName).append("> getModelType() {\n")
+                .append("        return ").append(modelName).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public void render(final ").append(modelName).append(" s0, final java.io.Writer writer) ")
+                .append("throws java.io.IOException {\n")
+                .append(body)
+                .append("    }\n")
+                .append("}\n")
+                .toString();
+    }
+
+    private void nodes(final List<TemplateTree.Node> nodes, final List<Scope> scopes, final int depth) {
+        for (final TemplateTree.Node node : nodes) {
+            switch (node.kind) {
+                case TEXT:
+                    text(node.name, depth);
+                    break;
+                case VALUE:
+                    value(node, scopes, depth);
+                    break;
+                case SECTION:
+                case INVERTED:
+                    section(node, scopes, depth);
+                    break;
+                case PARTIAL:
+                    error(node, "partials aren't supported by typed templates: {{> " + node.name + "}}");
+                    break;
+                case CACHE:
+                    error(node, "fragment cache sections aren't supported by typed templates, use the output cache of "
+                                + "the panel instead: {{#" + node.name + "}}");
+                    break;
+                default:
+                    error(node, "template inheritance isn't supported by typed templates: {{" + node.name + "}}");
+            }
+        }
+    }
+
+    private void text(final String text, final int depth) {
+        for (int start = 0; start < text.length(); start += CHUNK_SIZE) {
+            line(depth, "writer.write(" + literal(text.substring(start, Math.min(text.length(), start + CHUNK_SIZE))) + ");");
+        }
+    }
+
+    private void value(final TemplateTree.Node node, final List<Scope> scopes, final int depth) {
+        final Scope value = resolve(node, scopes, depth);
+
+        if (value != null) {
+            if (isLambda(value.type)) {
+                error(node, "lambdas aren't supported by typed templates: {{" + node.name + "}}");
+            }
+
+            line(depth, "write(" + value.variable + ", writer, " + node.encoded + ");");
+        }
+    }
+
+    private void section(final TemplateTree.Node node, final List<Scope> scopes, final int depth) {
+        final Scope value = resolve(node, scopes, depth);
+        if (value == null) {
+            return;
+        }
+
+        final Iteration iteration = iteration(node, value.type);
+        if (iteration == null) {
+            return;
+        }
+
+        final String v = value.variable;
+        final boolean inverted = node.kind == TemplateTree.Kind.INVERTED;
+
+        if (inverted) {
+            switch (iteration) {
+                case BOOLEAN:
+                    line(depth, "if (!Boolean.TRUE.equals(" + v + ")) {");
+                    break;
+                case ITERABLE:
+                    line(depth, "if (" + v + " == null || !" + v + ".iterator().hasNext()) {");
+                    break;
+                case ITERATOR:
+                    line(depth, "if (" + v + " == null || !" + v + ".hasNext()) {");
+                    break;
+                case ARRAY:
+                    line(depth, "if (" + v + " == null || " + v + ".length == 0) {");
+                    break;
+                case STRING:
+                    line(depth, "if (" + v + " == null || " + v + ".length() == 0) {");
+                    break;
+                default:
+                    line(depth, "if (" + v + " == null) {");
+            }
+
+            // inverted sections don't add a scope
+            nodes(node.children, scopes, depth + 1);
+            line(depth, "}");
+            return;
+        }
+
+        final List<Scope> sectionScopes = new ArrayList<Scope>(scopes);
+        final String scope = "s" + (++counter);
+
+        switch (iteration) {
+            case BOOLEAN:
+                line(depth, "if (Boolean.TRUE.equals(" + v + ")) {");
+                line(depth + 1, "final Boolean " + scope + " = " + v + ";");
+                sectionScopes.add(new Scope(scope, value.type));
+                nodes(node.children, sectionScopes, depth + 1);
+                line(depth, "}");
+                break;
+            case ITERABLE:
+            case ITERATOR: {
+                final TypeMirror element = typeArgument(value.type, iteration == Iteration.ITERABLE ? Iterable.class : java.util.Iterator.class);
+                final String iterator = "i" + counter;
+
+                line(depth, "if (" + v + " != null) {");
+                line(depth + 1, "for (final java.util.Iterator " + iterator + " = "
+                                + (iteration == Iteration.ITERABLE ? v + ".iterator()" : v) + "; " + iterator + ".hasNext(); ) {");
+                line(depth + 2, "final " + typeName(element) + " " + scope + " = (" + typeName(element) + ") " + iterator + ".next();");
+                sectionScopes.add(new Scope(scope, element));
+                nodes(node.children, sectionScopes, depth + 2);
+                line(depth + 1, "}");
+                line(depth, "}");
+                break;
+            }
+            case ARRAY: {
+                final TypeMirror component = ((ArrayType) value.type).getComponentType();
+
+                line(depth, "if (" + v + " != null) {");
+                line(depth + 1, "for (final " + typeName(component) + " " + scope + " : " + v + ") {");
+                sectionScopes.add(new Scope(scope, component));
+                nodes(node.children, sectionScopes, depth + 2);
+                line(depth + 1, "}");
+                line(depth, "}");
+                break;
+            }
+            case STRING:
+                line(depth, "if (" + v + " != null && " + v + ".length() > 0) {");
+                line(depth + 1, "final String " + scope + " = " + v + ";");
+                sectionScopes.add(new Scope(scope, value.type));
+                nodes(node.children, sectionScopes, depth + 1);
+                line(depth, "}");
+                break;
+            default:
+                line(depth, "if (" + v + " != null) {");
+                line(depth + 1, "final " + typeName(value.type) + " " + scope + " = " + v + ";");
+                sectionScopes.add(new Scope(scope, value.type));
+                nodes(node.children, sectionScopes, depth + 1);
+                line(depth, "}");
+        }
+    }
+
+    /**
+     * @return how a section iterates a value of given type or null if the type isn't supported
+     */
+    private Iteration iteration(final TemplateTree.Node node, final TypeMirror type) {
+        if (type.getKind() == TypeKind.BOOLEAN || isSubtype(type, Boolean.class)) {
+            return Iteration.BOOLEAN;
+        } else if (type.getKind() == TypeKind.ARRAY) {
+            if (((ArrayType) type).getComponentType().getKind().isPrimitive()) {
+                error(node, "arrays of primitives can't be iterated by sections: {{#" + node.name + "}}");
+                return null;
+            }
+
+            return Iteration.ARRAY;
+        } else if (isSubtype(type, String.class)) {
+            return Iteration.STRING;
+        } else if (isSubtype(type, Iterable.class)) {
+            return Iteration.ITERABLE;
+        } else if (isSubtype(type, java.util.Iterator.class)) {
+            return Iteration.ITERATOR;
+        } else if (isLambda(type)) {
+            error(node, "lambdas aren't supported by typed templates: {{#" + node.name + "}}");
+            return null;
+        }
+
+        return Iteration.OBJECT;
+    }
+
+    /**
+     * resolves the value with the name of given node and declares it as local variable.
+     *
+     * @return the local variable of the value or null if it can't be resolved
+     */
+    private Scope resolve(final TemplateTree.Node node, final List<Scope> scopes, final int depth) {
+        final Scope current = scopes.get(scopes.size() - 1);
+
+        if (".".equals(node.name)) {
+            return current;
+        }
+
+        final String[] names = node.name.split("\\.");
+        Scope value = null;
+
+        // the first name is looked up in all scopes from the inner most to the outer most
+        for (int i = scopes.size() - 1; i >= 0 && value == null; i--) {
+            value = member(scopes.get(i), names[0], node, depth);
+        }
+
+        if (value == null) {
+            error(node, "{{" + node.name + "}} can't be resolved on " + describe(scopes));
+            return null;
+        }
+
+        // all other names are looked up in the previous value only
+        for (int i = 1; i < names.length; i++) {
+            final Scope next = member(value, names[i], node, depth);
+
+            if (next == null) {
+                error(node, "{{" + node.name + "}}: " + names[i] + " can't be resolved on " + value.type);
+                return null;
+            }
+
+            value = next;
+        }
+
+        return value;
+    }
+
+    /**
+     * finds the member with given name and declares its value as local variable.
+     *
+     * @return the local variable or null if the scope has no such member
+     */
+    private Scope member(final Scope scope, final String name, final TemplateTree.Node node, final int depth) {
+        final TypeMirror type = upperBound(scope.type);
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        if (isSubtype(type, java.util.Map.class)) {
+            error(node, "maps can't be checked by typed templates, use a bean instead: {{" + node.name + "}} on " + type);
+            return null;
+        }
+
+        final DeclaredType declaredType = (DeclaredType) type;
+        final TypeElement typeElement = (TypeElement) declaredType.asElement();
+        final String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+        Element member = method(typeElement, name);
+        if (member == null) {
+            member = method(typeElement, "get" + suffix);
+        }
+        if (member == null) {
+            member = method(typeElement, "is" + suffix);
+        }
+        if (member == null) {
+            member = field(typeElement, name);
+        }
+        if (member == null) {
+            return null;
+        }
+
+        final TypeMirror memberType = member.getKind() == ElementKind.METHOD
+                                      ? ((ExecutableType) types.asMemberOf(declaredType, member)).getReturnType()
+                                      : types.asMemberOf(declaredType, member);
+        final String access = member.getKind() == ElementKind.METHOD
+                              ? member.getSimpleName() + "()"
+                              : member.getSimpleName().toString();
+        final String variable = "v" + (++counter);
+        final String typeName = typeName(memberType);
+
+        line(depth, "final " + typeName + " " + variable + " = " + scope.variable + " == null ? null : ("
+                    + typeName + ") " + scope.variable + "." + access + ";");
+
+        return new Scope(variable, memberType);
+    }
+
+    private Element method(final TypeElement type, final String name) {
+        for (final Element member : elements.getAllMembers(type)) {
+            if (member.getKind() == ElementKind.METHOD && member.getSimpleName().contentEquals(name) && isAccessible(member)) {
+                final ExecutableElement method = (ExecutableElement) member;
+
+                if (method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID) {
+                    return method;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Element field(final TypeElement type, final String name) {
+        for (final Element member : elements.getAllMembers(type)) {
+            if (member.getKind() == ElementKind.FIELD && member.getSimpleName().contentEquals(name) && isAccessible(member)) {
+                return member;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return true, if the generated renderer can access given member
+     */
+    private boolean isAccessible(final Element member) {
+        if (member.getModifiers().contains(Modifier.PUBLIC)) {
+            return true;
+        }
+
+        return !member.getModifiers().contains(Modifier.PRIVATE)
+               && elements.getPackageOf(member).getQualifiedName().contentEquals(packageName);
+    }
+
+    /**
+     * @return the type argument of given generic super type, e.g. the element type of an Iterable
+     */
+    private TypeMirror typeArgument(final TypeMirror type, final Class<?> superType) {
+        final TypeMirror erasure = types.erasure(elements.getTypeElement(superType.getName()).asType());
+
+        for (final TypeMirror candidate : supertypes(upperBound(type))) {
+            if (types.isSameType(types.erasure(candidate), erasure)) {
+                final List<? extends TypeMirror> arguments = ((DeclaredType) candidate).getTypeArguments();
+
+                if (!arguments.isEmpty()) {
+                    return upperBound(arguments.get(0));
+                }
+            }
+        }
+
+        return elements.getTypeElement(Object.class.getName()).asType();
+    }
+
+    /**
+     * @return given type and all its super types
+     */
+    private List<TypeMirror> supertypes(final TypeMirror type) {
+        final List<TypeMirror> supertypes = new ArrayList<TypeMirror>();
+        supertypes.add(type);
+
+        for (int i = 0; i < supertypes.size(); i++) {
+            for (final TypeMirror supertype : types.directSupertypes(supertypes.get(i))) {
+                supertypes.add(supertype);
+            }
+        }
+
+        return supertypes;
+    }
+
+    /**
+     * @return the upper bound of a type variable or wildcard, or given type itself
+     */
+    private TypeMirror upperBound(final TypeMirror type) {
+        if (type.getKind() == TypeKind.TYPEVAR) {
+            return upperBound(((TypeVariable) type).getUpperBound());
+        } else if (type.getKind() == TypeKind.WILDCARD) {
+            final TypeMirror bound = ((WildcardType) type).getExtendsBound();
+
+            return bound != null ? upperBound(bound) : elements.getTypeElement(Object.class.getName()).asType();
+        }
+
+        return type;
+    }
+
+    private boolean isSubtype(final TypeMirror type, final Class<?> superType) {
+        final TypeElement element = elements.getTypeElement(superType.getName());
+
+        return element != null && types.isAssignable(types.erasure(upperBound(type)), types.erasure(element.asType()));
+    }
+
+    /**
+     * @return true, if values of given type are executed by mustache.java instead of written
+     */
+    private boolean isLambda(final TypeMirror type) {
+        return isSubtype(type, java.util.concurrent.Callable.class) || isSubtype(type, com.google.common.base.Function.class);
+    }
+
+    /**
+     * @return the erased source name of given type, primitives are boxed
+     */
+    private String typeName(final TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+
+        return types.erasure(type).toString();
+    }
+
+    private String describe(final List<Scope> scopes) {
+        final StringBuilder description = new StringBuilder();
+
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            description.append(scopes.get(i).type).append(i > 0 ? ", " : "");
+        }
+
+        return description.toString();
+    }
+
+    private void error(final TemplateTree.Node node, final String message) {
+        errors.add(template + ":" + node.line + ": " + message);
+    }
+
+    private void line(final int depth, final String code) {
+        for (int i = 0; i < depth; i++) {
+            body.append("    ");
+        }
+
+        body.append(code).append('\n');
+    }
+
+    /**
+     * @return a java string literal of given value, all non ascii characters are unicode escapes
+     */
+    private static String literal(final String value) {
+        final StringBuilder literal = new StringBuilder(value.length() + 16).append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+
+        return literal.append('"').toString();
+    }
+
+    /**
+     * a local variable of the generated renderer and its static type.
+     */
+    private static final class Scope {
+        private final String variable;
+        private final TypeMirror type;
+
+        private Scope(final String variable, final TypeMirror type) {
+            this.variable = variable;
+            this.type = type;
+        }
+    }
+}
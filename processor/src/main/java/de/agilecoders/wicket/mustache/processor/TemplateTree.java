@@ -0,0 +1,172 @@
+package de.agilecoders.wicket.mustache.processor;
+
+import com.github.mustachejava.Code;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+import com.github.mustachejava.MustacheVisitor;
+import com.github.mustachejava.TemplateContext;
+import com.github.mustachejava.codes.DefaultMustache;
+import de.agilecoders.wicket.mustache.WicketMustacheFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The tags of a mustache template as tree. The template is parsed by the mustache.java parser and the end tags of
+ * <code>{{#cache}}</code> sections are completed like at runtime, so text and whitespace are the same.
+ *
+ * @author miha
+ */
+final class TemplateTree {
+
+    /**
+     * position of a <code>{{#cache}}</code> section, e.g. " @hash.0"
+     */
+    private static final Pattern POSITION = Pattern.compile("\\s+@\\S+$");
+
+    /**
+     * type of a node
+     */
+    enum Kind {
+        TEXT, VALUE, SECTION, INVERTED, PARTIAL, CACHE, UNSUPPORTED
+    }
+
+    /**
+     * a text, value or section of the template.
+     */
+    static final class Node {
+        final Kind kind;
+        final String name;
+        final boolean encoded;
+        final int line;
+        final List<Node> children;
+
+        private Node(final Kind kind, final String name, final boolean encoded, final int line, final List<Node> children) {
+            this.kind = kind;
+            this.name = name;
+            this.encoded = encoded;
+            this.line = line;
+            this.children = children;
+        }
+    }
+
+    /**
+     * parses given template source.
+     *
+     * @param source The template source
+     * @param file   The template path, which is used in error messages
+     * @return the nodes of the template
+     * @throws com.github.mustachejava.MustacheException if the template can't be parsed
+     */
+    static List<Node> parse(final String source, final String file) {
+        final WicketMustacheFactory factory = new WicketMustacheFactory(false) {
+            @Override
+            public MustacheVisitor createMustacheVisitor() {
+                return new Visitor(this);
+            }
+        };
+
+        return ((Tree) factory.compile(new StringReader(source), file)).nodes;
+    }
+
+    /**
+     * collects the nodes of a template or section.
+     */
+    private static final class Visitor implements MustacheVisitor {
+        private final MustacheFactory factory;
+        private final List<Node> nodes = new ArrayList<Node>();
+
+        private Visitor(final MustacheFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public Mustache mustache(final TemplateContext templateContext) {
+            return new Tree(templateContext, factory, nodes);
+        }
+
+        @Override
+        public void iterable(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            if (WicketMustacheFactory.isFragmentCacheSection(variable)) {
+                // without the position that was added to the start tag
+                nodes.add(new Node(Kind.CACHE, POSITION.matcher(variable).replaceFirst(""), false, templateContext.line(),
+                                   Collections.<Node>emptyList()));
+            } else {
+                nodes.add(new Node(Kind.SECTION, variable, false, templateContext.line(), ((Tree) mustache).nodes));
+            }
+        }
+
+        @Override
+        public void notIterable(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            nodes.add(new Node(Kind.INVERTED, variable, false, templateContext.line(), ((Tree) mustache).nodes));
+        }
+
+        @Override
+        public void partial(final TemplateContext templateContext, final String variable) {
+            nodes.add(new Node(Kind.PARTIAL, variable, false, templateContext.line(), Collections.<Node>emptyList()));
+        }
+
+        @Override
+        public void value(final TemplateContext templateContext, final String variable, final boolean encoded) {
+            nodes.add(new Node(Kind.VALUE, variable, encoded, templateContext.line(), Collections.<Node>emptyList()));
+        }
+
+        @Override
+        public void write(final TemplateContext templateContext, final String text) {
+            if (text.length() == 0) {
+                return;
+            }
+
+            final int last = nodes.size() - 1;
+            if (last >= 0 && nodes.get(last).kind == Kind.TEXT) {
+                final Node previous = nodes.remove(last);
+                nodes.add(new Node(Kind.TEXT, previous.name + text, false, previous.line, previous.children));
+            } else {
+                nodes.add(new Node(Kind.TEXT, text, false, templateContext.line(), Collections.<Node>emptyList()));
+            }
+        }
+
+        @Override
+        public void pragma(final TemplateContext templateContext, final String pragma, final String args) {
+            // pragmas don't change the output
+        }
+
+        @Override
+        public void eof(final TemplateContext templateContext) {
+            // nothing to do
+        }
+
+        @Override
+        public void extend(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            nodes.add(new Node(Kind.UNSUPPORTED, "<" + variable, false, templateContext.line(), Collections.<Node>emptyList()));
+        }
+
+        @Override
+        public void name(final TemplateContext templateContext, final String variable, final Mustache mustache) {
+            nodes.add(new Node(Kind.UNSUPPORTED, "$" + variable, false, templateContext.line(), Collections.<Node>emptyList()));
+        }
+    }
+
+    /**
+     * the parsed template or section, which only carries its nodes.
+     */
+    private static final class Tree extends DefaultMustache {
+        private final List<Node> nodes;
+
+        private Tree(final TemplateContext templateContext, final MustacheFactory factory, final List<Node> nodes) {
+            super(templateContext, factory, new Code[0], templateContext.file());
+
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * private constructor.
+     */
+    private TemplateTree() {
+        throw new UnsupportedOperationException();
+    }
+}
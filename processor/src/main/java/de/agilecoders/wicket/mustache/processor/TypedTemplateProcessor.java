@@ -0,0 +1,165 @@
+package de.agilecoders.wicket.mustache.processor;
+
+import com.github.mustachejava.MustacheException;
+import de.agilecoders.wicket.mustache.typed.TypedRenderer;
+import de.agilecoders.wicket.mustache.typed.TypedTemplate;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor that checks all templates of classes annotated with {@link TypedTemplate} against their
+ * model type and generates a {@link TypedRenderer} for each of them. Unknown values, sections over maps and other
+ * dynamic constructs are reported as compile errors.
+ *
+ * @author miha
+ */
+@SupportedAnnotationTypes("de.agilecoders.wicket.mustache.typed.TypedTemplate")
+public class TypedTemplateProcessor extends AbstractProcessor {
+
+    /**
+     * locations that are searched for templates
+     */
+    private static final StandardLocation[] LOCATIONS = new StandardLocation[] {
+            StandardLocation.SOURCE_PATH, StandardLocation.CLASS_OUTPUT, StandardLocation.CLASS_PATH
+    };
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (final Element element : roundEnv.getElementsAnnotatedWith(TypedTemplate.class)) {
+            if (element instanceof TypeElement) {
+                process((TypeElement) element);
+            }
+        }
+
+        return true;
+    }
+
+    private void process(final TypeElement type) {
+        final TypedTemplate annotation = type.getAnnotation(TypedTemplate.class);
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        final String path = templatePath(type, packageName, annotation.template());
+
+        final TypeMirror model = modelType(annotation);
+        if (model.getKind() != TypeKind.DECLARED) {
+            error(type, "the model of a typed template must be a class or interface: " + model);
+            return;
+        }
+
+        final String source = read(path);
+        if (source == null) {
+            error(type, "can't find typed template " + path);
+            return;
+        }
+
+        final List<TemplateTree.Node> nodes;
+        try {
+            nodes = TemplateTree.parse(source, path);
+        } catch (MustacheException e) {
+            error(type, "can't parse typed template " + path + ": " + e.getMessage());
+            return;
+        }
+
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String className = binaryName.replace('$', '_') + TypedRenderer.SUFFIX;
+        final String simpleName = className.substring(className.lastIndexOf('.') + 1);
+
+        final RendererGenerator generator = new RendererGenerator(processingEnv.getTypeUtils(), processingEnv.getElementUtils(),
+                                                                  packageName, path);
+        final String renderer = generator.generate(simpleName, type.getQualifiedName().toString(), model, nodes);
+
+        if (!generator.getErrors().isEmpty()) {
+            for (final String message : generator.getErrors()) {
+                error(type, message);
+            }
+
+            return;
+        }
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(className, type);
+            final Writer writer = file.openWriter();
+
+            try {
+                writer.write(renderer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(type, "can't write typed renderer " + className + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the absolute template path without leading slash, e.g. "de/agilecoders/HomePanel.mustache"
+     */
+    private String templatePath(final TypeElement type, final String packageName, final String template) {
+        if (template.startsWith("/")) {
+            return template.substring(1);
+        }
+
+        final String name = template.length() > 0 ? template : type.getSimpleName() + ".mustache";
+
+        return packageName.length() > 0 ? packageName.replace('.', '/') + "/" + name : name;
+    }
+
+    /**
+     * @return the model type; the class itself isn't loaded while compiling, so it is read from the exception
+     */
+    private TypeMirror modelType(final TypedTemplate annotation) {
+        try {
+            return processingEnv.getElementUtils().getTypeElement(annotation.model().getName()).asType();
+        } catch (MirroredTypeException e) {
+            return e.getTypeMirror();
+        }
+    }
+
+    /**
+     * @return the template source or null if it can't be found
+     */
+    private String read(final String path) {
+        final int separator = path.lastIndexOf('/');
+        final String packageName = separator > 0 ? path.substring(0, separator).replace('/', '.') : "";
+        final String name = path.substring(separator + 1);
+
+        for (final StandardLocation location : LOCATIONS) {
+            try {
+                final FileObject file = processingEnv.getFiler().getResource(location, packageName, name);
+
+                return file.getCharContent(true).toString();
+            } catch (IOException e) {
+                // not in this location
+            } catch (IllegalArgumentException e) {
+                // location isn't supported by this compiler
+            }
+        }
+
+        return null;
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,204 @@
+package de.agilecoders.wicket.mustache.processor;
+
+import de.agilecoders.wicket.mustache.WicketMustacheFactory;
+import de.agilecoders.wicket.mustache.typed.TypedRenderer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Tests {@link TypedTemplateProcessor} and {@link RendererGenerator}: annotated classes are compiled with the
+ * processor and the generated renderers must render like mustache.java.
+ *
+ * @author miha
+ */
+public class TypedTemplateProcessorTest {
+
+    private static final String MODEL = "package sample;\n"
+                                         + "import java.util.List;\n"
+                                         + "public class Model {\n"
+                                         + "    public String title = \"<b>Title</b>\";\n"
+                                         + "    public boolean isVisible() { return true; }\n"
+                                         + "    public String getEmpty() { return \"\"; }\n"
+                                         + "    public Integer getCount() { return 0; }\n"
+                                         + "    public Item getFirst() { return new Item(\"first\"); }\n"
+                                         + "    public List<Item> getItems() { return java.util.Arrays.asList(new Item(\"a&b\"), new Item(\"c\")); }\n"
+                                         + "    public List<Item> getNone() { return java.util.Collections.<Item>emptyList(); }\n"
+                                         + "    public static class Item {\n"
+                                         + "        private final String name;\n"
+                                         + "        public Item(String name) { this.name = name; }\n"
+                                         + "        public String name() { return name; }\n"
+                                         + "    }\n"
+                                         + "}\n";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File sources;
+    private File classes;
+    private List<String> errors;
+
+    @Before
+    public void before() throws IOException {
+        sources = folder.newFolder("java");
+        classes = folder.newFolder("classes");
+
+        write("sample/Model.java", MODEL);
+    }
+
+    @Test
+    public void rendersLikeMustacheJava() throws Exception {
+        final String template = "<h1>{{title}}</h1>{{{title}}}\n"
+                                + "{{#visible}}<p>{{first.name}}</p>{{/visible}}\n"
+                                + "<ul>{{#items}}<li>{{name}} of {{title}}</li>{{/items}}</ul>\n"
+                                + "{{#none}}<li>never</li>{{/none}}{{^none}}<p>no items</p>{{/none}}\n"
+                                + "{{#empty}}not empty{{/empty}}{{^empty}}empty{{/empty}} {{count}}";
+
+        final ClassLoader classLoader = compile(template);
+        final Object model = classLoader.loadClass("sample.Model").getDeclaredConstructor().newInstance();
+        final TypedRenderer<?> renderer = TypedRenderer.of(classLoader.loadClass("sample.Panel"));
+
+        assertNotNull(renderer);
+        assertEquals("sample.Panel_Renderer", renderer.getClass().getName());
+        assertEquals(mustache(template, model, false), renderer.renderObject(model, false));
+        assertEquals(mustache(template, model, true), renderer.renderObject(model, true));
+        assertTrue(renderer.renderObject(model, false).contains("<li>a&amp;b of &lt;b&gt;Title&lt;/b&gt;</li>"));
+    }
+
+    @Test
+    public void rendersNullModelsLikeMustacheJava() throws Exception {
+        final String template = "<h1>{{title}}</h1>{{#items}}<li>{{name}}</li>{{/items}}{{^items}}none{{/items}}";
+        final ClassLoader classLoader = compile(template);
+
+        assertEquals("<h1></h1>none", TypedRenderer.of(classLoader.loadClass("sample.Panel")).renderObject(null, false));
+    }
+
+    @Test
+    public void rejectsUnknownValues() throws IOException {
+        compile("{{#items}}{{label}}{{/items}}");
+
+        assertError("sample/Panel.mustache:1: {{label}} can't be resolved on sample.Model.Item, sample.Model");
+    }
+
+    @Test
+    public void rejectsUnknownMembersOfDottedNames() throws IOException {
+        compile("{{first.label}}");
+
+        assertError("sample/Panel.mustache:1: {{first.label}}: label can't be resolved on sample.Model.Item");
+    }
+
+    @Test
+    public void rejectsFragmentCacheSections() throws IOException {
+        compile("<p>\n{{#cache nav 60}}{{title}}{{/cache}}</p>");
+
+        assertError("sample/Panel.mustache:2: fragment cache sections aren't supported by typed templates, "
+                    + "use the output cache of the panel instead: {{#cache nav 60}}");
+    }
+
+    @Test
+    public void rejectsPartials() throws IOException {
+        compile("{{> sample/item}}");
+
+        assertError("sample/Panel.mustache:1: partials aren't supported by typed templates: {{> sample/item}}");
+    }
+
+    @Test
+    public void rejectsMissingTemplates() throws IOException {
+        compile(null);
+
+        assertError("can't find typed template sample/Panel.mustache");
+    }
+
+    /**
+     * compiles the model and an annotated panel class with the processor.
+     *
+     * @param template The template of the panel or null to compile the panel without template
+     * @return a class loader of all compiled classes
+     */
+    private ClassLoader compile(final String template) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+
+        if (template != null) {
+            write("sample/Panel.mustache", template);
+        }
+        write("sample/Panel.java", "package sample;\n"
+                                   + "@de.agilecoders.wicket.mustache.typed.TypedTemplate(model = Model.class)\n"
+                                   + "public class Panel {}\n");
+
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        final File generated = folder.newFolder("generated");
+
+        try {
+            compiler.getTask(null, fileManager, diagnostics,
+                             Arrays.asList("-nowarn", "-d", classes.getPath(), "-s", generated.getPath(),
+                                           "-sourcepath", sources.getPath(), "-cp", System.getProperty("java.class.path"),
+                                           "-processor", TypedTemplateProcessor.class.getName()),
+                             null, fileManager.getJavaFileObjects(new File(sources, "sample/Model.java"), new File(sources, "sample/Panel.java")))
+                    .call();
+        } finally {
+            fileManager.close();
+        }
+
+        errors = new ArrayList<String>();
+        for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+
+        return new URLClassLoader(new URL[]{classes.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    private void assertError(final String message) {
+        assertEquals(Arrays.asList(message), errors);
+    }
+
+    /**
+     * @return the output of mustache.java for given template
+     */
+    private static String mustache(final String template, final Object model, final boolean escapeHtml) {
+        final StringWriter writer = new StringWriter();
+        new WicketMustacheFactory(escapeHtml).compile(new StringReader(template), "template.mustache").execute(writer, model);
+
+        return writer.toString();
+    }
+
+    private void write(final String path, final String content) throws IOException {
+        final File file = new File(sources, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
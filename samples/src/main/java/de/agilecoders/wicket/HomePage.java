@@ -2,9 +2,11 @@ package de.agilecoders.wicket;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import de.agilecoders.wicket.mustache.TemplateKey;
 import de.agilecoders.wicket.mustache.markup.html.ClientSideMustachePanel;
 import de.agilecoders.wicket.mustache.markup.html.LazyLoadingClientSideMustachePanel;
 import de.agilecoders.wicket.mustache.markup.html.MustachePanel;
+import de.agilecoders.wicket.mustache.request.resource.MustacheTemplateReference;
 import org.apache.wicket.core.util.resource.PackageResourceStream;
 import org.apache.wicket.markup.html.WebPage;
 import org.apache.wicket.model.IModel;
@@ -57,6 +59,11 @@ public class HomePage extends WebPage {
             protected IResourceStream newTemplateResourceStream() {
                 return new PackageResourceStream(HomePage.class, "template.mustache");
             }
+
+            @Override
+            protected TemplateKey newTemplateKey() {
+                return TemplateKey.of(HomePage.class, "template.mustache");
+            }
         });
 
         add(new ClientSideMustachePanel("template-client", scopeModel) {
@@ -64,6 +71,11 @@ public class HomePage extends WebPage {
             protected IResourceStream newTemplateResourceStream() {
                 return new PackageResourceStream(HomePage.class, "template.mustache");
             }
+
+            @Override
+            protected TemplateKey newTemplateKey() {
+                return TemplateKey.of(HomePage.class, "template.mustache");
+            }
         });
 
         add(new LazyLoadingClientSideMustachePanel("template-lazy", scopeModel) {
@@ -72,6 +84,11 @@ public class HomePage extends WebPage {
                 return new PackageResourceStream(HomePage.class, "template.mustache");
             }
 
+            @Override
+            protected MustacheTemplateReference newTemplateReference() {
+                return new MustacheTemplateReference(HomePage.class, "template.mustache");
+            }
+
             @Override
             protected Duration delay() {
                 return Duration.seconds(5);